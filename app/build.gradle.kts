@@ -31,6 +31,54 @@ application {
     //mainClass.set("jlox.tool.GenerateAst")
 }
 
+// Benchmarks live in src/jmh, with the scripts they run in src/jmh/resources/workloads.
+// They are in package jlox, so they can reach the package private phases directly.
+val jmh by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+
+dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+// Runs all benchmarks, or pass JMH options like -PjmhArgs="PipelineBenchmark.interpret -p workload=fib".
+val runJmh by tasks.registering(JavaExec::class) {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks."
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args((project.findProperty("jmhArgs") as String?)?.split(" ") ?: listOf())
+}
+
+// Performance regression tests live in src/perf. They run the JMH workloads and compare
+// them to src/perf/baselines.properties. Fails when allocation grows by more than
+// -PperfAllocThreshold percent (default 5), or throughput drops by more than
+// -PperfThreshold percent, if given. Write new baselines with -PperfUpdate.
+val perf by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[perf.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+
+val perfTest by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Checks the workloads against their performance baselines."
+    classpath = perf.runtimeClasspath
+    mainClass.set("jlox.PerfRegression")
+    args("--workloads", file("src/jmh/resources/workloads"), "--baselines", file("src/perf/baselines.properties"))
+    args("--allocation-threshold", project.findProperty("perfAllocThreshold") ?: "5")
+    project.findProperty("perfThreshold")?.let { args("--threshold", it) }
+    if (project.hasProperty("perfUpdate")) args("--update")
+}
+
 val run by tasks.getting(JavaExec::class) {
     standardInput = System.`in`
 }
+
+// The client of the compile server (jlox --server), bin/jlox-client, is a shell script in
+// src/main/dist, which the distribution picks up by itself.
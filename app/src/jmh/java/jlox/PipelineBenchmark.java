@@ -0,0 +1,91 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times every phase of running a script on its own, over the scripts in
+// src/jmh/resources/workloads. Run with ./gradlew runJmh, see app/build.gradle.kts.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    private static final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+    @Param({ "fib", "methods", "closures", "strings", "inheritance" })
+    public String workload;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+    private Program program;
+    private Interpreter interpreter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (InputStream in = PipelineBenchmark.class.getResourceAsStream("/workloads/" + workload + ".lox")) {
+            if (in == null) throw new IOException("No workload named " + workload);
+            source = new String(in.readAllBytes(), Charset.defaultCharset());
+        }
+
+        ErrorReporter errors = new ErrorReporter(System.err);
+        tokens = new Lexer(source, errors).scanTokens();
+        statements = new Parser(tokens, errors).parse();
+        program = new Program();
+        new Resolver(program.locals, errors).resolve(statements);
+        if (errors.hadError) throw new IllegalStateException("Workload " + workload + " does not compile.");
+    }
+
+    @Benchmark
+    public List<Token> lex() {
+        return new Lexer(source, new ErrorReporter(discard)).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, new ErrorReporter(discard)).parse();
+    }
+
+    // Into the same kind of map as the ModuleLoader resolves into.
+    @Benchmark
+    public Map<Expr, Integer> resolve() {
+        Map<Expr, Integer> locals = new Program().locals;
+        new Resolver(locals, new ErrorReporter(discard)).resolve(statements);
+        return locals;
+    }
+
+    // A fresh Interpreter for every run, so that globals do not carry over. Making one
+    // defines all the natives, which is left out of interpret. Setting up per invocation
+    // costs next to nothing next to runs of milliseconds.
+    @Setup(Level.Invocation)
+    public void newInterpreter() {
+        interpreter = new Interpreter(program, discard, discard);
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        interpreter.interpret(statements);
+        return interpreter;
+    }
+}
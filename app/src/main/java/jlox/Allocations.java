@@ -0,0 +1,186 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// jlox --allocations: an Interpreter that records where Lox code allocates instances,
+// functions (closures, and methods bound by bind) and environments. The site of an
+// allocation is the innermost statement being run, so a call allocates on the line of
+// the statement making it. After the run it reports, per line and kind, how many were
+// allocated, how many are still reachable, and about how many bytes those take
+// themselves. That shallow size leaves out the values they hold, which are counted on
+// the lines allocating them, so it is not the retained size a heap dump would show.
+//
+// Every allocation is held by a weak reference until the report, which makes this mode
+// slow and heavy on memory, so keep it for finding where the garbage comes from.
+class Allocations extends Interpreter {
+    private static final int REPORTED_SITES = 20;
+
+    enum Kind {
+        INSTANCE("instance"),
+        CLOSURE("closure"),
+        BOUND_METHOD("bound method"),
+        ENVIRONMENT("environment");
+
+        final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    static boolean enabled = false;
+
+    // The statement every thread is running, innermost. Forks run on their own threads.
+    private static final ThreadLocal<Object> statement = new ThreadLocal<>();
+    // Allocations made outside of any statement, like the globals of an interpreter.
+    private static final Object NO_STATEMENT = new Object();
+    private static final Map<Object, Site> sites = new ConcurrentHashMap<>();
+
+    private static class Allocation extends WeakReference<Object> {
+        final Kind kind;
+
+        Allocation(Object object, Kind kind) {
+            super(object);
+            this.kind = kind;
+        }
+    }
+
+    private static class Site {
+        final LongAdder[] allocated = new LongAdder[Kind.values().length];
+        final Queue<Allocation> objects = new ConcurrentLinkedQueue<>();
+
+        Site() {
+            for (int i = 0; i < allocated.length; i++) allocated[i] = new LongAdder();
+        }
+    }
+
+    Allocations(Program program, PrintStream out, PrintStream err) {
+        super(program, out, err);
+        enabled = true;
+    }
+
+    private Allocations(Allocations parent) {
+        super(parent);
+    }
+
+    @Override
+    Interpreter fork() {
+        return new Allocations(this);
+    }
+
+    @Override
+    void execute(Stmt stmt) {
+        Object outer = statement.get();
+        statement.set(stmt);
+        try {
+            super.execute(stmt);
+        } finally {
+            statement.set(outer);
+        }
+    }
+
+    static void allocated(Object object, Kind kind) {
+        Object current = statement.get();
+        Site site = sites.computeIfAbsent(current == null ? NO_STATEMENT : current, key -> new Site());
+        site.allocated[kind.ordinal()].increment();
+        site.objects.add(new Allocation(object, kind));
+    }
+
+    // What was allocated on one line of a module, of one kind.
+    private static class Line {
+        final Module module;
+        final int line;
+        final Kind kind;
+        long allocated = 0;
+        long live = 0;
+        long shallow = 0;
+
+        Line(Module module, int line, Kind kind) {
+            this.module = module;
+            this.line = line;
+            this.kind = kind;
+        }
+    }
+
+    void report(PrintStream out, Module main) {
+        enabled = false;
+        // Ask for a collection, so what is left is what the program still holds on to.
+        for (int i = 0; i < 3; i++) System.gc();
+
+        List<Module> modules = new ArrayList<>();
+        modules.add(main);
+        for (Module module : program.imports.values()) {
+            if (!modules.contains(module)) modules.add(module);
+        }
+
+        List<Line> lines = new ArrayList<>();
+        Map<String, Line> outside = new HashMap<>();
+        addSite(sites.get(NO_STATEMENT), null, 0, outside);
+        lines.addAll(outside.values());
+        for (Module module : modules) {
+            Map<String, Line> moduleLines = new HashMap<>();
+            for (Map.Entry<Object, Integer> node : LineFinder.lines(module.statements).entrySet()) {
+                addSite(sites.get(node.getKey()), module, node.getValue(), moduleLines);
+            }
+            lines.addAll(moduleLines.values());
+        }
+        lines.sort((a, b) -> Long.compare(b.allocated, a.allocated));
+
+        out.printf("%12s %12s %12s  %-14s %s%n", "allocated", "live", "shallow", "kind", "line");
+        Map<Module, List<String>> sources = new HashMap<>();
+        for (Line line : lines.subList(0, Math.min(REPORTED_SITES, lines.size()))) {
+            String where = "<runtime>";
+            String text = "";
+            if (line.module != null) {
+                List<String> source = sources.computeIfAbsent(line.module, LineFinder::source);
+                if (line.line >= 1 && line.line <= source.size()) text = source.get(line.line - 1).trim();
+                String name = line.module.path == null ? "<script>" : line.module.path.getFileName().toString();
+                where = name + ":" + line.line;
+            }
+            out.printf("%12d %12d %12s  %-14s %s  %s%n",
+                line.allocated, line.live, Bench.bytes(line.shallow), line.kind.label, where, text);
+        }
+    }
+
+    private static void addSite(Site site, Module module, int number, Map<String, Line> lines) {
+        if (site == null) return;
+        for (Kind kind : Kind.values()) {
+            long allocated = site.allocated[kind.ordinal()].sum();
+            if (allocated == 0) continue;
+            lines.computeIfAbsent(number + " " + kind, key -> new Line(module, number, kind)).allocated += allocated;
+        }
+        for (Allocation allocation : site.objects) {
+            Object object = allocation.get();
+            if (object == null) continue;
+            Line line = lines.get(number + " " + allocation.kind);
+            line.live++;
+            line.shallow += shallowSize(object);
+        }
+    }
+
+    // About the bytes an object takes, with its own map but not the values in it, for a
+    // 64-bit JVM with compressed references. Values are counted where they are allocated.
+    private static long shallowSize(Object object) {
+        if (object instanceof Environment) return 24 + mapSize(((Environment)object).values().size(), 48);
+        if (object instanceof LoxInstance) return 24 + mapSize(((LoxInstance)object).fieldCount(), 64);
+        return 40;
+    }
+
+    // A HashMap or ConcurrentHashMap: the map, its table, which it makes on the first
+    // put, and a node per entry.
+    private static long mapSize(int entries, long map) {
+        if (entries == 0) return map;
+        int capacity = 16;
+        while (capacity * 3 / 4 < entries) capacity *= 2;
+        return map + 16 + 4L * capacity + 32L * entries;
+    }
+}
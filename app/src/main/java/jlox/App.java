@@ -3,33 +3,162 @@ package jlox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.io.PrintStream;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.Arrays;
 
 public class App {
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
+    private static Interpreter interpreter;
+    private static ModuleLoader loader;
+    // Defer parsing and resolving function bodies until their first call.
+    private static boolean lazyParsing = false;
+    // Globals to restore into every interpreter before it runs, see Snapshot.
+    private static Path restorePath = null;
+    // Where to write the samples of the profiler, if profiling, see Profiler.
+    private static Path profilePath = null;
+    // Count and time every node, and report the hottest lines, see HotLines.
+    private static boolean hotLines = false;
+    // Record where Lox objects are allocated, see Allocations.
+    private static boolean allocations = false;
+    // Report the Stats after the run. --jmx counts them too, but doesn't report them.
+    private static boolean printStats = false;
 
     public static void main(String[] args) throws IOException {
         System.out.println("Hello.");
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [source file]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+
+        if (args.length > 0 && args[0].equals("bench")) {
+            System.exit(Bench.main(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
+        boolean useCache = true;
+        String path = null;
+        String serverSocket = null;
+        String snapshotPath = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--no-cache")) {
+                useCache = false;
+            } else if (arg.equals("--lazy")) {
+                lazyParsing = true;
+            } else if (arg.equals("--stats")) {
+                Stats.enabled = true;
+                printStats = true;
+            } else if (arg.equals("--jmx")) {
+                LoxMetrics.register();
+            } else if (arg.equals("--hot-lines")) {
+                hotLines = true;
+            } else if (arg.equals("--allocations")) {
+                allocations = true;
+            } else if (arg.equals("--profile") && i + 1 < args.length) {
+                profilePath = Paths.get(args[++i]);
+            } else if (arg.equals("--server") && i + 1 < args.length) {
+                serverSocket = args[++i];
+            } else if (arg.equals("--snapshot") && i + 1 < args.length) {
+                snapshotPath = args[++i];
+            } else if (arg.equals("--restore") && i + 1 < args.length) {
+                restorePath = Paths.get(args[++i]);
+            } else if (arg.startsWith("--") || path != null) {
+                usage();
+            } else {
+                path = arg;
+            }
+        }
+
+        if (serverSocket != null) {
+            if (path != null || snapshotPath != null) usage();
+            new Server(Paths.get(serverSocket)).serve();
+            return;
+        }
+
+        if (hotLines && allocations) usage();
+        if (hotLines) {
+            interpreter = new HotLines(new Program(), System.out, System.err);
+        } else if (allocations) {
+            interpreter = new Allocations(new Program(), System.out, System.err);
+        } else {
+            interpreter = new Interpreter();
+        }
+        if (restorePath != null) {
+            try {
+                Snapshot.restore(interpreter, restorePath);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(66);
+            }
+        }
+        loader = new ModuleLoader(interpreter.program, interpreter.errors, lazyParsing, useCache);
+
+        if (path != null) {
+            runFile(path);
+            if (snapshotPath != null) {
+                try {
+                    Snapshot.save(interpreter, Paths.get(snapshotPath));
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(74);
+                }
+            }
+        } else if (snapshotPath != null) {
+            usage();
         } else {
             runPrompt();
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: jlox [--no-cache] [--lazy] [--stats] [--hot-lines] [--profile samples]");
+        System.out.println("            [--allocations] [--jmx] [--restore snapshot]");
+        System.out.println("            [source file [--snapshot snapshot] | --server socket]");
+        System.out.println("       jlox bench [--warmup runs] [--iterations runs] [--backends eager,lazy,cached] source file");
+        System.exit(64);
+    }
+
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
-        run(new String(bytes, Charset.defaultCharset()));
+        Module module = loader.load(Paths.get(path));
+        if (!interpreter.errors.hadError) {
+            Profiler profiler = profilePath != null ? new Profiler(1) : null;
+            if (profiler != null) profiler.start();
+            Stats.execute(interpreter, module);
+            if (profiler != null) profiler.stop(profilePath);
+        }
+        if (printStats) Stats.report(System.err);
+        if (interpreter instanceof HotLines) ((HotLines)interpreter).report(System.err, module);
+        if (interpreter instanceof Allocations) ((Allocations)interpreter).report(System.err, module);
+
+        if (interpreter.errors.hadError) System.exit(65);
+        if (interpreter.errors.hadRuntimeError) System.exit(70);
+    }
+
+    // Runs a script in a fresh interpreter and returns the exit code jlox would have
+    // exited with. Used by the Server, which runs many scripts in one JVM at once.
+    // The path must be absolute, as the server's working directory is not the client's.
+    static int runScript(Path path, PrintStream out, PrintStream err) throws IOException {
+        Interpreter interpreter = new Interpreter(new Program(), out, err);
+        if (restorePath != null) {
+            try {
+                Snapshot.restore(interpreter, restorePath);
+            } catch (IOException e) {
+                err.println(e.getMessage());
+                return 66;
+            }
+        }
+
+        ErrorReporter errors = interpreter.errors;
+        Module module;
+        try {
+            module = new ModuleLoader(interpreter.program, errors, lazyParsing, false).load(path);
+        } catch (IOException e) {
+            err.println("Could not read " + path + ".");
+            return 66;
+        }
+        if (!errors.hadError) Stats.execute(interpreter, module);
+        // The server's JVM goes on, which would keep their threads waiting forever.
+        LoxGenerator.abandonAll(interpreter);
+
+        if (errors.hadError) return 65;
+        if (errors.hadRuntimeError) return 70;
+        return 0;
     }
 
     private static void runPrompt() throws IOException {
@@ -41,48 +170,15 @@ public class App {
             String line = reader.readLine();
             if (line == null) break;
             run(line);
-            hadError = false;
+            interpreter.errors.hadError = false;
         }
     }
 
     private static void run(String source) {
-        Lexer lexer = new Lexer(source);
-        List<Token> tokens = lexer.scanTokens();
-
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-
-        // Stop if syntax error
-        if (hadError) return;
-
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-
-        if (hadError) return;
+        Module module = loader.load(source);
+        if (interpreter.errors.hadError) return;
 
         //System.out.println(new AstPrinter().print(expression));
-        interpreter.interpret(statements);
-    }
-
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
-        }
-    }
-
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
-    }
-
-    private static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error " + where + ": " + message);
-        hadError = true;
+        interpreter.interpret(module);
     }
 }
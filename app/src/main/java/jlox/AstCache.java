@@ -0,0 +1,105 @@
+package jlox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+// Stores the parsed and resolved program of a script in a .loxc file next to it,
+// so that unchanged scripts can skip lexing, parsing and resolving on later runs.
+//
+// The statements and the resolver depths are written with the same object stream,
+// which keeps the identity of the Expr nodes used as keys in the depth map intact.
+class AstCache {
+    static final String EXTENSION = ".loxc";
+
+    private static final int MAGIC = 0x4c4f5843; // "LOXC"
+    // Stale caches are ignored. Changes to the fields of the AST classes are caught by
+    // SerialFormat. Bump this for changes it can't see, like what the Resolver records.
+    private static final int VERSION = 5;
+
+    static class Entry {
+        final List<Stmt> statements;
+        final Map<Expr, Integer> locals;
+
+        Entry(List<Stmt> statements, Map<Expr, Integer> locals) {
+            this.statements = statements;
+            this.locals = locals;
+        }
+    }
+
+    static Path pathFor(String sourcePath) {
+        return Paths.get(sourcePath + EXTENSION);
+    }
+
+    static String hash(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : bytes) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to ship SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Returns null when there is no cache, or it was made for other source or another version.
+    @SuppressWarnings("unchecked")
+    static Entry load(Path cachePath, String hash) {
+        if (!Files.isRegularFile(cachePath)) return null;
+
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(cachePath)))) {
+            in.setObjectInputFilter(SerialFormat.FILTER);
+            if (in.readInt() != MAGIC) return null;
+            if (in.readInt() != VERSION) return null;
+            if (in.readLong() != SerialFormat.AST) return null;
+            if (!hash.equals(in.readUTF())) return null;
+
+            List<Stmt> statements = (List<Stmt>)in.readObject();
+            Map<Expr, Integer> locals = (Map<Expr, Integer>)in.readObject();
+            return new Entry(statements, locals);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // A broken or outdated cache is no worse than a missing one.
+            return null;
+        }
+    }
+
+    static void store(Path cachePath, String hash, List<Stmt> statements, Map<Expr, Integer> locals) {
+        Path temp = null;
+        try {
+            // Write to a temporary file first, so a concurrent run never sees half a cache.
+            Path dir = cachePath.toAbsolutePath().getParent();
+            temp = Files.createTempFile(dir, cachePath.getFileName().toString(), ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(SerialFormat.AST);
+                out.writeUTF(hash);
+                out.writeObject(statements);
+                out.writeObject(locals);
+            }
+            Files.move(temp, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            // Caching is only an optimization, the script still runs without it.
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+}
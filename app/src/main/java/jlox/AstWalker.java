@@ -0,0 +1,191 @@
+package jlox;
+
+import java.util.List;
+
+// Visits every node of a tree, for the analyses that need all of them, like counting
+// nodes for Stats or finding their lines for HotLines. Function bodies that are not
+// parsed yet are left out.
+abstract class AstWalker implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    void walk(List<? extends Stmt> statements) {
+        for (Stmt statement : statements) walk(statement);
+    }
+
+    void walk(Stmt stmt) {
+        if (stmt == null) return;
+        enter(stmt);
+        stmt.accept(this);
+        exit(stmt);
+    }
+
+    void walk(Expr expr) {
+        if (expr == null) return;
+        enter(expr);
+        expr.accept(this);
+        exit(expr);
+    }
+
+    void walk(FunctionBody body) {
+        if (body.isParsed()) walk(body.parsed());
+    }
+
+    // Called for every node, before its children.
+    protected abstract void enter(Object node);
+
+    // Called for every node, after its children.
+    protected void exit(Object node) {}
+
+    @Override
+    public Void visitTernaryExpr(Expr.Ternary expr) {
+        walk(expr.condition);
+        walk(expr.truePath);
+        walk(expr.falsePath);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        walk(expr.left);
+        walk(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        walk(expr.left);
+        walk(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        walk(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        walk(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        walk(expr.callee);
+        for (Expr argument : expr.arguments) walk(argument);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        walk(expr.object);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        walk(expr.object);
+        walk(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        walk(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLambdaExpr(Expr.Lambda expr) {
+        walk(expr.body);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        walk(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        walk(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        walk(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        walk(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        walk(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        walk(stmt.condition);
+        walk(stmt.thenBranch);
+        walk(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        walk(stmt.condition);
+        walk(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        walk(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        walk(stmt.superclass);
+        walk(stmt.methods);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitYieldStmt(Stmt.Yield stmt) {
+        walk(stmt.value);
+        return null;
+    }
+}
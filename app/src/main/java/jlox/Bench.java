@@ -0,0 +1,156 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// jlox bench: runs a script over and over in one JVM, and reports how long a run takes.
+//
+// Every run compiles and runs the script from scratch in a fresh Interpreter, like
+// running jlox on it would, so backends that differ in their front end (parsing
+// eagerly or lazily, or loading the AST cache) can be compared side by side. The
+// output of the script is thrown away.
+//
+// Allocation is counted for the thread running the script only, so whatever tasks,
+// isolates and parallel natives allocate on their own threads is left out.
+class Bench {
+    private enum Backend {
+        EAGER(false, false),
+        LAZY(true, false),
+        CACHED(false, true);
+
+        final boolean lazyParsing;
+        final boolean useCache;
+
+        Backend(boolean lazyParsing, boolean useCache) {
+            this.lazyParsing = lazyParsing;
+            this.useCache = useCache;
+        }
+    }
+
+    private static final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+    private final Path path;
+    private final int warmup;
+    private final int iterations;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private Bench(Path path, int warmup, int iterations) {
+        this.path = path;
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    // Returns the exit code.
+    static int main(String[] args) throws IOException {
+        int warmup = 10;
+        int iterations = 20;
+        List<Backend> backends = List.of(Backend.EAGER);
+        String path = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--warmup") && i + 1 < args.length) {
+                    warmup = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--iterations") && i + 1 < args.length) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--backends") && i + 1 < args.length) {
+                    backends = new ArrayList<>();
+                    for (String name : args[++i].split(",")) backends.add(Backend.valueOf(name.toUpperCase()));
+                } else if (arg.startsWith("--") || path != null) {
+                    return usage();
+                } else {
+                    path = arg;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return usage();
+        }
+        if (path == null || warmup < 0 || iterations < 1) return usage();
+
+        Bench bench = new Bench(Paths.get(path), warmup, iterations);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %12s%n",
+            "backend", "mean ms", "p50 ms", "p90 ms", "p99 ms", "runs/s", "alloc/run");
+        for (Backend backend : backends) {
+            int exitCode = bench.measure(backend);
+            if (exitCode != 0) return exitCode;
+        }
+        return 0;
+    }
+
+    private static int usage() {
+        System.out.println("Usage: jlox bench [--warmup runs] [--iterations runs]");
+        System.out.println("                  [--backends eager,lazy,cached] source file");
+        return 64;
+    }
+
+    private int measure(Backend backend) throws IOException {
+        for (int i = 0; i < warmup; i++) {
+            int exitCode = run(backend);
+            if (exitCode != 0) return exitCode;
+        }
+
+        long[] times = new long[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            int exitCode = run(backend);
+            times[i] = System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+            if (exitCode != 0) return exitCode;
+        }
+
+        Arrays.sort(times);
+        double mean = Arrays.stream(times).average().orElse(0);
+        String allocation = allocatedBytes() < 0 ? "n/a" : bytes(allocated / iterations);
+        System.out.printf("%-8s %10.3f %10.3f %10.3f %10.3f %10.1f %12s%n",
+            backend.name().toLowerCase(),
+            mean / 1e6,
+            percentile(times, 50) / 1e6,
+            percentile(times, 90) / 1e6,
+            percentile(times, 99) / 1e6,
+            1e9 / mean,
+            allocation);
+        return 0;
+    }
+
+    // Same as App.runFile, but with the output thrown away.
+    private int run(Backend backend) throws IOException {
+        Interpreter interpreter = new Interpreter(new Program(), discard, System.err);
+        ErrorReporter errors = interpreter.errors;
+        Module module = new ModuleLoader(interpreter.program, errors, backend.lazyParsing, backend.useCache).load(path);
+        if (!errors.hadError) interpreter.interpret(module);
+
+        if (errors.hadError) return 65;
+        if (errors.hadRuntimeError) return 70;
+        return 0;
+    }
+
+    // Nearest rank, of sorted times.
+    static long percentile(long[] sorted, int percent) {
+        int rank = (int)Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    // Or -1 if the JVM can't tell.
+    private long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean)threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported()) return -1;
+        return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static String bytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KiB", bytes / 1024.0);
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+}
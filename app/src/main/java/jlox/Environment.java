@@ -1,18 +1,25 @@
 package jlox;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
-class Environment {
+class Environment implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final Map<String, Object> values = new HashMap<>();
     final Environment enclosing;
 
     Environment() {
         enclosing = null;
+        if (Stats.enabled) Stats.environments.increment();
+        if (Allocations.enabled) Allocations.allocated(this, Allocations.Kind.ENVIRONMENT);
     }
 
     Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        if (Stats.enabled) Stats.environments.increment();
+        if (Allocations.enabled) Allocations.allocated(this, Allocations.Kind.ENVIRONMENT);
     }
 
     Object get(Token name) {
@@ -38,6 +45,10 @@ class Environment {
         return environment;
     }
 
+    Map<String, Object> values() {
+        return values;
+    }
+
     void define(String name, Object value) {
         // TODO: warn when overriding previously defined var
         values.put(name, value);
@@ -0,0 +1,67 @@
+package jlox;
+
+import java.io.PrintStream;
+
+// Reports the errors of one compilation or one run of a program, and remembers
+// whether there were any. Every Interpreter has its own, so programs running
+// at the same time do not see each other's errors.
+class ErrorReporter {
+    private final PrintStream err;
+    // The file the errors are in, or null for source that is not from a file.
+    final String file;
+    // The reporter of the whole program, which a reporter for one file marks as well.
+    private final ErrorReporter program;
+    // Volatile, as modules are compiled in parallel.
+    volatile boolean hadError = false;
+    volatile boolean hadRuntimeError = false;
+
+    ErrorReporter(PrintStream err) {
+        this(err, null, null);
+    }
+
+    private ErrorReporter(PrintStream err, String file, ErrorReporter program) {
+        this.err = err;
+        this.file = file;
+        this.program = program;
+    }
+
+    // For the errors of one module, which start with its path so the errors of modules
+    // compiled at the same time can be told apart. A null file reports like this one.
+    ErrorReporter forFile(String file) {
+        if (file == null) return this;
+        return new ErrorReporter(err, file, program != null ? program : this);
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    void runtimeError(RuntimeError error) {
+        err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        hadRuntimeError = true;
+        if (program != null) program.hadRuntimeError = true;
+        if (Stats.enabled) Stats.runtimeErrors.increment();
+    }
+
+    // For runtime errors that aren't at any token, like those of failed tasks.
+    void runtimeError(String message) {
+        err.println(message);
+        hadRuntimeError = true;
+        if (program != null) program.hadRuntimeError = true;
+        if (Stats.enabled) Stats.runtimeErrors.increment();
+    }
+
+    private void report(int line, String where, String message) {
+        err.println((file == null ? "" : file + ": ") + "[line " + line + "] Error " + where + ": " + message);
+        hadError = true;
+        if (program != null) program.hadError = true;
+    }
+}
@@ -0,0 +1,60 @@
+package jlox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Java Flight Recorder events, so what Lox code does shows up in the same recording as
+// GC pauses and JIT compilation. Record with -XX:StartFlightRecording, or jcmd JFR.start.
+//
+// Without a recording the events are never instrumented, and the JIT removes them.
+// Java stack traces are left out, they only show the Interpreter.
+class Events {
+    @Name("jlox.FunctionCall")
+    @Label("Lox Function Call")
+    @Description("A call of a Lox function that took longer than the threshold")
+    @Category("Lox")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static class FunctionCall extends Event {
+        @Label("Function")
+        String function;
+
+        @Label("Line")
+        @Description("Line the function is declared on")
+        int line;
+    }
+
+    @Name("jlox.Instantiation")
+    @Label("Lox Instantiation")
+    @Description("A new instance of a Lox class")
+    @Category("Lox")
+    @StackTrace(false)
+    static class Instantiation extends Event {
+        @Label("Class")
+        String className;
+
+        @Label("Line")
+        @Description("Line the class is declared on")
+        int line;
+    }
+
+    @Name("jlox.RuntimeError")
+    @Label("Lox Runtime Error")
+    @Category("Lox")
+    @StackTrace(false)
+    static class RuntimeErrorEvent extends Event {
+        @Label("Message")
+        String message;
+
+        @Label("Line")
+        int line;
+
+        @Label("Token")
+        String token;
+    }
+}
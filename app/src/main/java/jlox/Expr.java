@@ -1,9 +1,12 @@
 /* File generated by jlox.tool.GenerateAst */
 package jlox;
 
+import java.io.Serializable;
 import java.util.List;
 
-abstract class Expr {
+abstract class Expr implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     interface Visitor<R> {
         R visitTernaryExpr(Ternary expr);
         R visitBinaryExpr(Binary expr);
@@ -22,6 +25,8 @@ abstract class Expr {
     }
 
     static class Ternary extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Ternary(Expr condition, Expr truePath, Expr falsePath) {
             this.condition = condition;
             this.truePath = truePath;
@@ -38,6 +43,8 @@ abstract class Expr {
         final Expr falsePath;
     }
     static class Binary extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Binary(Expr left, Token operator, Expr right) {
             this.left = left;
             this.operator = operator;
@@ -54,6 +61,8 @@ abstract class Expr {
         final Expr right;
     }
     static class Logical extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Logical(Expr left, Token operator, Expr right) {
             this.left = left;
             this.operator = operator;
@@ -70,6 +79,8 @@ abstract class Expr {
         final Expr right;
     }
     static class Grouping extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Grouping(Expr expression) {
             this.expression = expression;
         }
@@ -82,6 +93,8 @@ abstract class Expr {
         final Expr expression;
     }
     static class Literal extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Literal(Object value) {
             this.value = value;
         }
@@ -94,6 +107,8 @@ abstract class Expr {
         final Object value;
     }
     static class Unary extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Unary(Token operator, Expr right) {
             this.operator = operator;
             this.right = right;
@@ -108,6 +123,8 @@ abstract class Expr {
         final Expr right;
     }
     static class Call extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Call(Expr callee, Token paren, List<Expr> arguments) {
             this.callee = callee;
             this.paren = paren;
@@ -124,6 +141,8 @@ abstract class Expr {
         final List<Expr> arguments;
     }
     static class Get extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Get(Expr object, Token name) {
             this.object = object;
             this.name = name;
@@ -138,6 +157,8 @@ abstract class Expr {
         final Token name;
     }
     static class Set extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Set(Expr object, Token name, Expr value) {
             this.object = object;
             this.name = name;
@@ -154,6 +175,8 @@ abstract class Expr {
         final Expr value;
     }
     static class This extends Expr {
+        private static final long serialVersionUID = 1L;
+
         This(Token keyword) {
             this.keyword = keyword;
         }
@@ -166,6 +189,8 @@ abstract class Expr {
         final Token keyword;
     }
     static class Variable extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Variable(Token name) {
             this.name = name;
         }
@@ -178,6 +203,8 @@ abstract class Expr {
         final Token name;
     }
     static class Assign extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Assign(Token name, Expr value) {
             this.name = name;
             this.value = value;
@@ -192,7 +219,9 @@ abstract class Expr {
         final Expr value;
     }
     static class Lambda extends Expr {
-        Lambda(List<Token> params, List<Stmt> body) {
+        private static final long serialVersionUID = 1L;
+
+        Lambda(List<Token> params, FunctionBody body) {
             this.params = params;
             this.body = body;
         }
@@ -203,9 +232,11 @@ abstract class Expr {
         }
 
         final List<Token> params;
-        final List<Stmt> body;
+        final FunctionBody body;
     }
     static class Super extends Expr {
+        private static final long serialVersionUID = 1L;
+
         Super(Token keyword, Token method) {
             this.keyword = keyword;
             this.method = method;
@@ -0,0 +1,97 @@
+package jlox;
+
+import java.io.Serializable;
+import java.util.List;
+
+// The statements of a function or lambda.
+//
+// In lazy mode the Parser only checks the syntax of a body and keeps its tokens, and
+// the Resolver only records the scopes visible from it. The body is parsed again and
+// resolved the first time it is needed, which is usually the first call. So syntax
+// errors are reported before anything runs, but errors the Resolver finds in a body,
+// like reading a local in its own initializer, only on its first call.
+//
+// A body with a yield statement makes its function a generator, see LoxGenerator.
+class FunctionBody implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private volatile List<Stmt> statements;
+    // Only known once parsed.
+    private boolean generator;
+    private List<Token> tokens;
+    private Resolver.Snapshot scope;
+    // The file the body is in, for its errors, see ErrorReporter.forFile.
+    private String file;
+    private final int line;
+
+    FunctionBody(List<Stmt> statements, int line, boolean generator) {
+        this.statements = statements;
+        this.line = line;
+        this.generator = generator;
+    }
+
+    // Tokens should be the whole body after the opening '{', up to and including the
+    // closing '}', followed by an EOF.
+    static FunctionBody deferred(List<Token> tokens, int line, String file) {
+        FunctionBody body = new FunctionBody(null, line, false);
+        body.tokens = tokens;
+        body.file = file;
+        return body;
+    }
+
+    int line() {
+        return line;
+    }
+
+    boolean isParsed() {
+        return statements != null;
+    }
+
+    // Only valid if isParsed, or after statements was called.
+    boolean isGenerator() {
+        return generator;
+    }
+
+    // Parsed statements, for the Resolver. Only valid if isParsed.
+    List<Stmt> parsed() {
+        return statements;
+    }
+
+    // Called by the Resolver instead of walking a body that is not parsed yet.
+    void defer(Resolver.Snapshot scope) {
+        this.scope = scope;
+    }
+
+    List<Stmt> statements(Interpreter interpreter) {
+        List<Stmt> result = statements;
+        if (result != null) return result;
+
+        synchronized (this) {
+            if (statements == null) statements = compile(interpreter);
+            return statements;
+        }
+    }
+
+    private List<Stmt> compile(Interpreter interpreter) {
+        ErrorReporter errors = new ErrorReporter(interpreter.errorStream()).forFile(file);
+
+        Parser parser = new Parser(tokens, errors, true);
+        List<Stmt> body = parser.parseBody();
+        if (!errors.hadError) {
+            new Resolver(interpreter.program.locals, errors, scope).resolveBody(body, parser.yielded());
+        }
+
+        if (errors.hadError) {
+            // The errors themselves have already been reported the same way as in eager mode.
+            interpreter.errors.hadError = true;
+            throw new RuntimeError(tokens.get(0), "Could not compile function body starting at line " + line + ".");
+        }
+
+        // Written before statements, which is volatile, so readers see it once they see the body.
+        generator = parser.yielded();
+        if (Stats.enabled) Stats.countNodes(body);
+        tokens = null;
+        scope = null;
+        return body;
+    }
+}
@@ -0,0 +1,136 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// jlox --hot-lines: an Interpreter that counts how often every statement and expression
+// runs, and the time spent in it not counting its children. After the run it reports
+// the lines with the most time, next to their source.
+//
+// The plain Interpreter knows nothing of this. It only has execute and evaluate not
+// private, so this class can wrap them, which costs nothing when this class is not used.
+class HotLines extends Interpreter {
+    private static final int REPORTED_LINES = 20;
+
+    private static class Counter {
+        final LongAdder count = new LongAdder();
+        final LongAdder selfTime = new LongAdder();
+    }
+
+    // Shared with forks, see fork.
+    private final Map<Object, Counter> counters;
+    // Time spent in the children of every node being run, innermost last.
+    private long[] childTimes = new long[64];
+    private int depth = 0;
+
+    HotLines(Program program, PrintStream out, PrintStream err) {
+        super(program, out, err);
+        counters = new ConcurrentHashMap<>();
+    }
+
+    private HotLines(HotLines parent) {
+        super(parent);
+        counters = parent.counters;
+    }
+
+    @Override
+    Interpreter fork() {
+        return new HotLines(this);
+    }
+
+    @Override
+    Object evaluate(Expr expr) {
+        long start = enter();
+        try {
+            return super.evaluate(expr);
+        } finally {
+            exit(expr, start);
+        }
+    }
+
+    @Override
+    void execute(Stmt stmt) {
+        long start = enter();
+        try {
+            super.execute(stmt);
+        } finally {
+            exit(stmt, start);
+        }
+    }
+
+    private long enter() {
+        if (depth == childTimes.length) childTimes = Arrays.copyOf(childTimes, depth * 2);
+        childTimes[depth++] = 0;
+        return System.nanoTime();
+    }
+
+    private void exit(Object node, long start) {
+        long time = System.nanoTime() - start;
+        long children = childTimes[--depth];
+        if (depth > 0) childTimes[depth - 1] += time;
+
+        Counter counter = counters.computeIfAbsent(node, key -> new Counter());
+        counter.count.increment();
+        counter.selfTime.add(time - children);
+    }
+
+    // What ran on one line of a module.
+    private static class Line {
+        final Module module;
+        final int line;
+        long count = 0;
+        long selfTime = 0;
+
+        Line(Module module, int line) {
+            this.module = module;
+            this.line = line;
+        }
+    }
+
+    void report(PrintStream out, Module main) {
+        List<Module> modules = new ArrayList<>();
+        modules.add(main);
+        for (Module module : program.imports.values()) {
+            if (!modules.contains(module)) modules.add(module);
+        }
+
+        List<Line> lines = new ArrayList<>();
+        for (Module module : modules) {
+            Map<Integer, Line> moduleLines = new HashMap<>();
+            for (Map.Entry<Object, Integer> node : LineFinder.lines(module.statements).entrySet()) {
+                Counter counter = counters.get(node.getKey());
+                if (counter == null) continue;
+                Line line = moduleLines.computeIfAbsent(node.getValue(), number -> new Line(module, number));
+                // Every node on a line runs about as often as the line, so take the most.
+                line.count = Math.max(line.count, counter.count.sum());
+                line.selfTime += counter.selfTime.sum();
+            }
+            lines.addAll(moduleLines.values());
+        }
+        lines.sort((a, b) -> Long.compare(b.selfTime, a.selfTime));
+
+        long total = 0;
+        for (Line line : lines) total += line.selfTime;
+
+        out.printf("%10s %6s %12s  %s%n", "self ms", "%", "count", "line");
+        Map<Module, List<String>> sources = new HashMap<>();
+        for (Line line : lines.subList(0, Math.min(REPORTED_LINES, lines.size()))) {
+            List<String> source = sources.computeIfAbsent(line.module, LineFinder::source);
+            String text = line.line >= 1 && line.line <= source.size() ? source.get(line.line - 1).trim() : "";
+            String name = line.module.path == null ? "<script>" : line.module.path.getFileName().toString();
+            out.printf("%10.3f %6.1f %12d  %s:%d  %s%n",
+                line.selfTime / 1e6,
+                total == 0 ? 0.0 : 100.0 * line.selfTime / total,
+                line.count,
+                name,
+                line.line,
+                text);
+        }
+    }
+}
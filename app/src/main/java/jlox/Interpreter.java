@@ -1,50 +1,335 @@
 package jlox;
 
+import java.io.PrintStream;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Runs a compiled Program. An Interpreter is the state of one execution (its globals,
+// current environment, output and errors) and must only be used by one thread at a time.
+// Run a program on many threads by giving each its own Interpreter for the same Program.
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    // What clock_ns counts from. nanoTime itself can be any size, and a double only holds
+    // whole nanoseconds exactly up to about 104 days.
+    private static final long CLOCK_ORIGIN = System.nanoTime();
+
+    final Program program;
+    final ErrorReporter errors;
+    private final PrintStream out;
+    private final PrintStream err;
+    final Environment globals;
+    private Environment environment;
+    private final Map<Expr, Integer> locals;
+    private final Set<Module> imported = new HashSet<>();
+    // Set when running inside an isolate, see Isolate.
+    Isolate isolateParent = null;
+    // The directory of the module the running code is in, which paths given to natives
+    // are relative to, like imports are. LoxFunction sets it to the module it is declared in.
+    String directory = Paths.get("").toAbsolutePath().toString();
+    // Tasks that failed and were not joined, shared with forks, see LoxTask.
+    final Set<LoxTask> failedTasks;
+    // Generators whose bodies started and did not finish, shared with forks, see LoxGenerator.
+    final Set<LoxGenerator.Handoff> runningGenerators;
+    // Set when running the body of a generator, see LoxGenerator.
+    LoxGenerator.Producer generator = null;
 
     Interpreter() {
-        globals.define("clock", new LoxCallable() {
-            @Override
-            public int arity() { return 0; }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double)System.currentTimeMillis() / 1000.0;
-            }
+        this(new Program(), System.out, System.err);
+    }
+
+    Interpreter(Program program, PrintStream out, PrintStream err) {
+        this.program = program;
+        this.locals = program.locals;
+        this.out = out;
+        this.err = err;
+        this.errors = new ErrorReporter(err);
+        this.failedTasks = ConcurrentHashMap.newKeySet();
+        this.runningGenerators = ConcurrentHashMap.newKeySet();
+        this.globals = new Environment();
+        this.environment = globals;
+
+        defineNative("clock", 0, (interpreter, arguments) ->
+            (double)System.currentTimeMillis() / 1000.0
+        );
+        defineNative("clock_ns", 0, (interpreter, arguments) ->
+            (double)(System.nanoTime() - CLOCK_ORIGIN)
+        );
+        defineNative("bench", 2, (interpreter, arguments) ->
+            Timing.bench(interpreter, NativeFunction.function(arguments.get(0), 0), NativeFunction.integer(arguments.get(1)))
+        );
+        defineNative("gc_stats", 0, (interpreter, arguments) ->
+            Timing.gcStats()
+        );
+        defineNative("to_str", 1, (interpreter, arguments) ->
+            arguments.get(0).toString()
+        );
+
+        defineNative("list", 0, (interpreter, arguments) ->
+            new LoxList()
+        );
+        defineNative("list_size", 1, (interpreter, arguments) ->
+            (double)LoxList.of(arguments.get(0)).size()
+        );
+        defineNative("list_get", 2, (interpreter, arguments) ->
+            LoxList.of(arguments.get(0)).get(NativeFunction.integer(arguments.get(1)))
+        );
+        defineNative("list_set", 3, (interpreter, arguments) -> {
+            LoxList.of(arguments.get(0)).set(NativeFunction.integer(arguments.get(1)), arguments.get(2));
+            return arguments.get(2);
+        });
+        defineNative("list_push", 2, (interpreter, arguments) -> {
+            LoxList.of(arguments.get(0)).add(arguments.get(1));
+            return null;
+        });
+        defineNative("list_pop", 1, (interpreter, arguments) ->
+            LoxList.of(arguments.get(0)).removeLast()
+        );
+
+        defineNative("map", 0, (interpreter, arguments) ->
+            new LoxMap()
+        );
+        defineNative("map_size", 1, (interpreter, arguments) ->
+            (double)LoxMap.of(arguments.get(0)).size()
+        );
+        defineNative("map_get", 2, (interpreter, arguments) ->
+            LoxMap.of(arguments.get(0)).get(arguments.get(1))
+        );
+        defineNative("map_has", 2, (interpreter, arguments) ->
+            LoxMap.of(arguments.get(0)).containsKey(arguments.get(1))
+        );
+        defineNative("map_put", 3, (interpreter, arguments) -> {
+            LoxMap.of(arguments.get(0)).put(arguments.get(1), arguments.get(2));
+            return arguments.get(2);
+        });
+        defineNative("map_remove", 2, (interpreter, arguments) ->
+            LoxMap.of(arguments.get(0)).remove(arguments.get(1))
+        );
+        defineNative("map_keys", 1, (interpreter, arguments) ->
+            LoxMap.of(arguments.get(0)).keys()
+        );
+        defineNative("map_values", 1, (interpreter, arguments) ->
+            LoxMap.of(arguments.get(0)).values()
+        );
+
+        defineNative("vector", 0, (interpreter, arguments) ->
+            LoxVector.EMPTY
+        );
+        defineNative("vector_size", 1, (interpreter, arguments) ->
+            (double)LoxVector.of(arguments.get(0)).size()
+        );
+        defineNative("vector_get", 2, (interpreter, arguments) ->
+            LoxVector.of(arguments.get(0)).get(NativeFunction.integer(arguments.get(1)))
+        );
+        defineNative("vector_set", 3, (interpreter, arguments) ->
+            LoxVector.of(arguments.get(0)).set(NativeFunction.integer(arguments.get(1)), arguments.get(2))
+        );
+        defineNative("vector_push", 2, (interpreter, arguments) ->
+            LoxVector.of(arguments.get(0)).push(arguments.get(1))
+        );
+        defineNative("vector_pop", 1, (interpreter, arguments) ->
+            LoxVector.of(arguments.get(0)).pop()
+        );
+
+        defineNative("dict", 0, (interpreter, arguments) ->
+            LoxDict.EMPTY
+        );
+        defineNative("dict_size", 1, (interpreter, arguments) ->
+            (double)LoxDict.of(arguments.get(0)).size()
+        );
+        defineNative("dict_get", 2, (interpreter, arguments) ->
+            LoxDict.of(arguments.get(0)).get(arguments.get(1))
+        );
+        defineNative("dict_has", 2, (interpreter, arguments) ->
+            LoxDict.of(arguments.get(0)).containsKey(arguments.get(1))
+        );
+        defineNative("dict_put", 3, (interpreter, arguments) ->
+            LoxDict.of(arguments.get(0)).put(arguments.get(1), arguments.get(2))
+        );
+        defineNative("dict_remove", 2, (interpreter, arguments) ->
+            LoxDict.of(arguments.get(0)).remove(arguments.get(1))
+        );
+        defineNative("dict_keys", 1, (interpreter, arguments) ->
+            LoxDict.of(arguments.get(0)).keys()
+        );
+        defineNative("dict_values", 1, (interpreter, arguments) ->
+            LoxDict.of(arguments.get(0)).values()
+        );
+
+        defineNative("array", 1, (interpreter, arguments) ->
+            new LoxArray(NativeFunction.index(arguments.get(0)))
+        );
+        defineNative("array_size", 1, (interpreter, arguments) ->
+            (double)LoxArray.of(arguments.get(0)).size()
+        );
+        defineNative("array_get", 2, (interpreter, arguments) ->
+            LoxArray.of(arguments.get(0)).get(NativeFunction.index(arguments.get(1)))
+        );
+        defineNative("array_set", 3, (interpreter, arguments) -> {
+            double value = NativeFunction.number(arguments.get(2));
+            LoxArray.of(arguments.get(0)).set(NativeFunction.index(arguments.get(1)), value);
+            return value;
+        });
+        defineNative("array_fill", 2, (interpreter, arguments) -> {
+            LoxArray.of(arguments.get(0)).fill(NativeFunction.number(arguments.get(1)));
+            return null;
+        });
+        defineNative("array_sum", 1, (interpreter, arguments) ->
+            LoxArray.of(arguments.get(0)).sum()
+        );
+        defineNative("array_copy", 5, (interpreter, arguments) -> {
+            LoxArray.copy(
+                LoxArray.of(arguments.get(0)), NativeFunction.index(arguments.get(1)),
+                LoxArray.of(arguments.get(2)), NativeFunction.index(arguments.get(3)),
+                NativeFunction.index(arguments.get(4))
+            );
+            return null;
+        });
+        defineNative("array_sort", 1, (interpreter, arguments) -> {
+            LoxArray.of(arguments.get(0)).sort();
+            return null;
+        });
 
-            @Override
-            public String toString() { return "<native fn>"; }
+        defineNative("parallel_map", 2, (interpreter, arguments) ->
+            Parallel.map(interpreter, arguments.get(0), arguments.get(1))
+        );
+        defineNative("parallel_reduce", 3, (interpreter, arguments) ->
+            Parallel.reduce(interpreter, arguments.get(0), arguments.get(1), arguments.get(2))
+        );
+        defineNative("parallel_for", 2, (interpreter, arguments) -> {
+            Parallel.forEach(interpreter, arguments.get(0), arguments.get(1));
+            return null;
         });
-        globals.define("to_str", new LoxCallable() {
-            @Override
-            public int arity() { return 1; }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return arguments.get(0).toString();
+        defineNative("range", 2, (interpreter, arguments) -> {
+            double start = NativeFunction.number(arguments.get(0));
+            if (arguments.get(1) == null) return LoxSequence.range(start, null);
+            return LoxSequence.range(start, NativeFunction.number(arguments.get(1)));
+        });
+        defineNative("seq", 1, (interpreter, arguments) ->
+            LoxSequence.view(arguments.get(0))
+        );
+        defineNative("lines", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof String)) throw new NativeError("Expected a file path.");
+            return LoxSequence.lines(interpreter, (String)arguments.get(0));
+        });
+        defineNative("seq_map", 2, (interpreter, arguments) ->
+            LoxSequence.of(arguments.get(0)).map(NativeFunction.function(arguments.get(1), 1))
+        );
+        defineNative("seq_filter", 2, (interpreter, arguments) ->
+            LoxSequence.of(arguments.get(0)).filter(NativeFunction.function(arguments.get(1), 1))
+        );
+        defineNative("seq_take", 2, (interpreter, arguments) ->
+            LoxSequence.of(arguments.get(0)).take(NativeFunction.index(arguments.get(1)))
+        );
+        defineNative("seq_reduce", 3, (interpreter, arguments) ->
+            LoxSequence.of(arguments.get(0)).reduce(interpreter, NativeFunction.function(arguments.get(1), 2), arguments.get(2))
+        );
+        defineNative("seq_list", 1, (interpreter, arguments) ->
+            LoxSequence.of(arguments.get(0)).toList(interpreter)
+        );
+
+        defineNative("next", 1, (interpreter, arguments) ->
+            LoxGenerator.of(arguments.get(0)).next()
+        );
+        defineNative("done", 1, (interpreter, arguments) ->
+            !LoxGenerator.of(arguments.get(0)).hasNext()
+        );
+
+        defineNative("spawn", 1, (interpreter, arguments) ->
+            LoxTask.spawn(interpreter, arguments.get(0))
+        );
+        defineNative("join", 1, (interpreter, arguments) ->
+            LoxTask.of(arguments.get(0)).join()
+        );
+        defineNative("channel", 1, (interpreter, arguments) ->
+            new LoxChannel(Math.max(1, NativeFunction.integer(arguments.get(0))))
+        );
+        defineNative("send", 2, (interpreter, arguments) -> {
+            LoxChannel.of(arguments.get(0)).send(arguments.get(1));
+            return null;
+        });
+        defineNative("receive", 1, (interpreter, arguments) ->
+            LoxChannel.of(arguments.get(0)).receive()
+        );
+        defineNative("close", 1, (interpreter, arguments) -> {
+            LoxChannel.of(arguments.get(0)).close();
+            return null;
+        });
+        defineNative("isolate", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof String)) throw new NativeError("Expected a script path.");
+            return Isolate.start(interpreter, (String)arguments.get(0));
+        });
+        defineNative("isolate_parent", 0, (interpreter, arguments) ->
+            interpreter.isolateParent
+        );
+        defineNative("isolate_send", 2, (interpreter, arguments) -> {
+            Isolate.of(arguments.get(0)).send(arguments.get(1));
+            return null;
+        });
+        defineNative("isolate_receive", 1, (interpreter, arguments) ->
+            Isolate.of(arguments.get(0)).receive()
+        );
+        defineNative("isolate_join", 1, (interpreter, arguments) -> {
+            Isolate.of(arguments.get(0)).join();
+            return null;
+        });
+        defineNative("cores", 0, (interpreter, arguments) ->
+            (double)Runtime.getRuntime().availableProcessors()
+        );
+        defineNative("sleep", 1, (interpreter, arguments) -> {
+            try {
+                Thread.sleep((long)(NativeFunction.number(arguments.get(0)) * 1000.0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-
-            @Override
-            public String toString() { return "<native fn>"; }
+            return null;
         });
     }
 
+    // For running a task on another thread, see LoxTask and Parallel. Shares the program, globals,
+    // output and errors of this interpreter, but has its own current environment.
+    Interpreter(Interpreter parent) {
+        this.program = parent.program;
+        this.locals = parent.locals;
+        this.out = parent.out;
+        this.err = parent.err;
+        this.errors = parent.errors;
+        this.failedTasks = parent.failedTasks;
+        this.runningGenerators = parent.runningGenerators;
+        this.globals = parent.globals;
+        this.environment = globals;
+        this.isolateParent = parent.isolateParent;
+        this.directory = parent.directory;
+    }
+
+    Interpreter fork() {
+        return new Interpreter(this);
+    }
+
+    private void defineNative(String name, int arity, NativeFunction.Body body) {
+        globals.define(name, new NativeFunction(name, arity, body));
+    }
+
+    void interpret(Module module) {
+        imported.add(module);
+        directory = module.directory().toString();
+        interpret(module.statements);
+    }
+
     void interpret(List<Stmt> statements) {
         try {
             for (Stmt statement : statements) {
                 execute(statement);
             }
         } catch (RuntimeError error) {
-            App.runtimeError(error);
+            errors.runtimeError(error);
         }
+        LoxTask.reportFailed(this);
     }
 
     @Override
@@ -94,7 +379,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             );
         }
 
-        return function.call(this, arguments);
+        try {
+            return function.call(this, arguments);
+        } catch (NativeError error) {
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
     }
 
     @Override
@@ -236,7 +525,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitLambdaExpr(Expr.Lambda expr) {
-        Object value = new LoxFunction(expr, environment, false);
+        Object value = new LoxFunction(expr, environment, directory, false);
         return value;
     }
 
@@ -250,13 +539,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
 
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean)object;
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
 
@@ -268,7 +557,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return object.toString();
     }
 
-    private Object evaluate(Expr expr) {
+    // Overridden by HotLines and Allocations. As long as those are not loaded, the JIT treats these as final.
+    Object evaluate(Expr expr) {
         return expr.accept(this);
     }
 
@@ -281,7 +571,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        out.println(stringify(value));
         return null;
     }
 
@@ -316,6 +606,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitYieldStmt(Stmt.Yield stmt) {
+        Object value = evaluate(stmt.value);
+        generator.produce(value);
+        return null;
+    }
+
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
@@ -326,7 +623,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        LoxFunction function = new LoxFunction(stmt, environment, false);
+        LoxFunction function = new LoxFunction(stmt, environment, directory, false);
         environment.define(stmt.name.lexeme, function);
         return null;
     }
@@ -349,11 +646,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         Map<String, LoxFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods) {
-            LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"));
+            LoxFunction function = new LoxFunction(method, environment, directory, method.name.lexeme.equals("init"));
             methods.put(method.name.lexeme, function);
         }
 
-        LoxClass klass = new LoxClass(stmt.name.lexeme, (LoxClass)superclass, methods);
+        LoxClass klass = new LoxClass(stmt.name.lexeme, (LoxClass)superclass, methods, stmt.name.line);
 
         if (stmt.superclass != null) {
             environment = environment.enclosing;
@@ -363,7 +660,27 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
-    private void execute(Stmt stmt) {
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        Module module = program.imports.get(stmt);
+        if (module == null)
+            throw new RuntimeError(stmt.path, "Module was never loaded.");
+
+        // Modules run once, in the global scope, the first time they are imported.
+        // Marking them first makes cyclic imports see a partially run module instead of looping.
+        if (!imported.add(module)) return null;
+
+        String importer = directory;
+        directory = module.directory().toString();
+        try {
+            executeBlock(module.statements, globals);
+        } finally {
+            directory = importer;
+        }
+        return null;
+    }
+
+    void execute(Stmt stmt) {
         stmt.accept(this);
     }
 
@@ -379,7 +696,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
-    void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    PrintStream outputStream() {
+        return out;
+    }
+
+    PrintStream errorStream() {
+        return err;
     }
 }
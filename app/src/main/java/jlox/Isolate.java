@@ -0,0 +1,144 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// A script running on its own thread in its own Interpreter, made by the isolate native.
+//
+// Unlike tasks (see LoxTask), isolates share nothing: not their globals, not their
+// instances. They only talk through messages, which are copied when they are sent,
+// so a CPU-bound script can run one isolate per core without any locking.
+//
+// Both sides hold an Isolate for the same pair of queues, with send and receive swapped.
+// The script inside the isolate gets its side from isolate_parent().
+class Isolate {
+    private static final int CAPACITY = 256;
+
+    private final LoxChannel in;
+    private final LoxChannel out;
+    // The thread running the script, on the side of the parent only.
+    private Thread thread = null;
+    // Set by that thread if the script failed, for join.
+    private volatile String failure = null;
+
+    private Isolate(LoxChannel in, LoxChannel out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    // The path is relative to the module calling isolate, like an import.
+    static Isolate start(Interpreter parent, String path) {
+        LoxChannel toChild = new LoxChannel(CAPACITY);
+        LoxChannel toParent = new LoxChannel(CAPACITY);
+        Isolate parentSide = new Isolate(toChild, toParent);
+        Isolate childSide = new Isolate(toParent, toChild);
+        Path script = Paths.get(parent.directory).resolve(path).normalize();
+
+        childSide.thread = new Thread(() -> {
+            Interpreter interpreter = new Interpreter(new Program(), parent.outputStream(), parent.errorStream());
+            interpreter.isolateParent = parentSide;
+            try {
+                ModuleLoader loader = new ModuleLoader(interpreter.program, interpreter.errors, false, false);
+                Module module = loader.load(script);
+                if (!interpreter.errors.hadError) interpreter.interpret(module);
+            } catch (IOException e) {
+                interpreter.errors.hadError = true;
+                parent.errorStream().println("Could not read isolate script " + script + ".");
+            } finally {
+                LoxGenerator.abandonAll(interpreter);
+                // The errors themselves were reported by the isolate.
+                if (interpreter.errors.hadError || interpreter.errors.hadRuntimeError) {
+                    childSide.failure = "Isolate " + script + " failed.";
+                }
+                // Let the parent stop waiting for messages from an isolate that is gone.
+                toParent.close();
+            }
+        }, "lox-isolate");
+
+        childSide.thread.setDaemon(true);
+        childSide.thread.start();
+        return childSide;
+    }
+
+    void send(Object value) {
+        out.send(copy(value));
+    }
+
+    // Returns nil once the other side is gone and all its messages were received.
+    Object receive() {
+        return in.receive();
+    }
+
+    // Waits for the isolate script to finish, and fails if it did. Only the parent can
+    // do this.
+    void join() {
+        if (thread == null) throw new NativeError("Can't join the parent of an isolate.");
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NativeError("Interrupted while joining an isolate.");
+        }
+        if (failure != null) throw new NativeError(failure);
+    }
+
+    // Messages are copied, so that isolates never share mutable state.
+    static Object copy(Object value) {
+        // Immutable, no need to copy.
+        if (isShareable(value)) return value;
+
+        if (value instanceof LoxVector) {
+            LoxVector vector = (LoxVector)value;
+            LoxVector copy = LoxVector.EMPTY;
+            for (int i = 0; i < vector.size(); i++) copy = copy.push(copy(vector.get(i)));
+            return copy;
+        }
+        if (value instanceof LoxDict) {
+            LoxDict dict = (LoxDict)value;
+            LoxDict copy = LoxDict.EMPTY;
+            LoxList keys = dict.keys();
+            for (int i = 0; i < keys.size(); i++) {
+                copy = copy.put(copy(keys.get(i)), copy(dict.get(keys.get(i))));
+            }
+            return copy;
+        }
+        if (value instanceof LoxList) {
+            LoxList list = (LoxList)value;
+            LoxList copy = new LoxList(list.size());
+            for (int i = 0; i < list.size(); i++) copy.add(copy(list.get(i)));
+            return copy;
+        }
+        if (value instanceof LoxArray) {
+            return ((LoxArray)value).copy();
+        }
+        if (value instanceof LoxMap) {
+            LoxMap map = (LoxMap)value;
+            LoxMap copy = new LoxMap(map.size());
+            LoxList keys = map.keys();
+            for (int i = 0; i < keys.size(); i++) {
+                copy.put(copy(keys.get(i)), copy(map.get(keys.get(i))));
+            }
+            return copy;
+        }
+        throw new NativeError("Can only send nil, booleans, numbers, strings, arrays, and lists, maps, vectors and dicts of those to an isolate.");
+    }
+
+    // Values no isolate can change, which are safe to share without a copy.
+    static boolean isShareable(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Double || value instanceof String) return true;
+        if (value instanceof LoxVector) return ((LoxVector)value).isShareable();
+        if (value instanceof LoxDict) return ((LoxDict)value).isShareable();
+        return false;
+    }
+
+    static Isolate of(Object value) {
+        if (value instanceof Isolate) return (Isolate)value;
+        throw new NativeError("Expected an isolate.");
+    }
+
+    @Override
+    public String toString() {
+        return "<isolate>";
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 
 class Lexer {
     private final String source;
+    private final ErrorReporter errors;
     private final List<Token> tokens = new ArrayList<>();
     private int start = 0;
     private int current = 0;
@@ -21,6 +22,7 @@ class Lexer {
         keywords.put("for",     TokenType.FOR    );
         keywords.put("fun",     TokenType.FUN    );
         keywords.put("if",      TokenType.IF     );
+        keywords.put("import",  TokenType.IMPORT );
         keywords.put("nil",     TokenType.NIL    );
         keywords.put("or",      TokenType.OR     );
         keywords.put("print",   TokenType.PRINT  );
@@ -30,10 +32,12 @@ class Lexer {
         keywords.put("true",    TokenType.TRUE   );
         keywords.put("var",     TokenType.VAR    );
         keywords.put("while",   TokenType.WHILE  );
+        keywords.put("yield",   TokenType.YIELD  );
     }
 
-    Lexer(String source) {
+    Lexer(String source, ErrorReporter errors) {
         this.source = source;
+        this.errors = errors;
     }
 
     List<Token> scanTokens() {
@@ -86,7 +90,7 @@ class Lexer {
                 else if (isAlpha(c))
                     identifier();
                 else
-                    App.error(line, "Unexpected character.");
+                    errors.error(line, "Unexpected character.");
                 break;
         }
     }
@@ -120,14 +124,16 @@ class Lexer {
         }
 
         if (isAtEnd()) {
-            App.error(line, "Unterminated string.");
+            errors.error(line, "Unterminated string.");
             return;
         }
 
         advance(); // Consume the final "
+        // Interned, so the same literal is the same string wherever it is written, which
+        // LoxMap compares by reference before calling equals.
         addToken(
             TokenType.STRING,
-            source.substring(start + 1, current - 1)
+            source.substring(start + 1, current - 1).intern()
         );
     }
 
@@ -0,0 +1,75 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Finds the line of every node. Nodes with a token are on the line of the token, like
+// errors report them. Others are on the line of their first descendant with a token,
+// and failing that, the line of their parent.
+class LineFinder extends AstWalker {
+    private final Map<Object, Integer> lines = new IdentityHashMap<>();
+    // The lines of the nodes being walked, innermost first, or -1 while not known yet.
+    private final Deque<int[]> nodeLines = new ArrayDeque<>();
+
+    static Map<Object, Integer> lines(List<Stmt> statements) {
+        LineFinder finder = new LineFinder();
+        finder.walk(statements);
+        return finder.lines;
+    }
+
+    @Override
+    protected void enter(Object node) {
+        int line = tokenLine(node);
+        if (line >= 0) {
+            // The first token below the enclosing nodes without a line of their own.
+            for (int[] enclosing : nodeLines) {
+                if (enclosing[0] >= 0) break;
+                enclosing[0] = line;
+            }
+        }
+        nodeLines.push(new int[] { line });
+    }
+
+    @Override
+    protected void exit(Object node) {
+        int line = nodeLines.pop()[0];
+        if (line < 0) line = nodeLines.isEmpty() ? 0 : Math.max(nodeLines.peek()[0], 0);
+        lines.put(node, line);
+    }
+
+    private static int tokenLine(Object node) {
+        Token token = null;
+        if (node instanceof Expr.Binary) token = ((Expr.Binary)node).operator;
+        else if (node instanceof Expr.Logical) token = ((Expr.Logical)node).operator;
+        else if (node instanceof Expr.Unary) token = ((Expr.Unary)node).operator;
+        else if (node instanceof Expr.Call) token = ((Expr.Call)node).paren;
+        else if (node instanceof Expr.Get) token = ((Expr.Get)node).name;
+        else if (node instanceof Expr.Set) token = ((Expr.Set)node).name;
+        else if (node instanceof Expr.This) token = ((Expr.This)node).keyword;
+        else if (node instanceof Expr.Variable) token = ((Expr.Variable)node).name;
+        else if (node instanceof Expr.Assign) token = ((Expr.Assign)node).name;
+        else if (node instanceof Expr.Super) token = ((Expr.Super)node).keyword;
+        else if (node instanceof Stmt.Return) token = ((Stmt.Return)node).keyword;
+        else if (node instanceof Stmt.Var) token = ((Stmt.Var)node).name;
+        else if (node instanceof Stmt.Function) token = ((Stmt.Function)node).name;
+        else if (node instanceof Stmt.Class) token = ((Stmt.Class)node).name;
+        else if (node instanceof Stmt.Import) token = ((Stmt.Import)node).keyword;
+        else if (node instanceof Stmt.Yield) token = ((Stmt.Yield)node).keyword;
+        return token == null ? -1 : token.line;
+    }
+
+    // The lines of the source of a module, or none if it is not a file.
+    static List<String> source(Module module) {
+        if (module.path == null) return List.of();
+        try {
+            return Files.readAllLines(module.path);
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+// A fixed size array of numbers, made by the array native.
+//
+// The numbers live off the Java heap in direct buffers, so even hundreds of millions
+// of them cost the garbage collector nothing. A direct buffer holds at most 2 GiB,
+// so larger arrays are split into chunks. Bulk operations (fill, sum, copy, sort)
+// work on the raw doubles, only single element access boxes.
+//
+// Arrays are not safe to change from several tasks at once, see LoxTask.
+class LoxArray implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHUNK_BITS = 27; // 1 GiB of doubles per chunk
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    // Ranges shorter than this are sorted by insertion sort.
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final long size;
+    private transient DoubleBuffer[] chunks;
+
+    LoxArray(long size) {
+        this.size = size;
+        allocate();
+    }
+
+    private void allocate() {
+        chunks = new DoubleBuffer[(int)((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+        try {
+            for (int i = 0; i < chunks.length; i++) {
+                long length = Math.min(CHUNK_SIZE, size - ((long)i << CHUNK_BITS));
+                chunks[i] = ByteBuffer.allocateDirect((int)(length * Double.BYTES))
+                    .order(ByteOrder.nativeOrder())
+                    .asDoubleBuffer();
+            }
+        } catch (OutOfMemoryError e) {
+            chunks = null;
+            throw new NativeError("Not enough memory for an array of " + size + " numbers, " +
+                "see the -XX:MaxDirectMemorySize JVM option.");
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    double get(long index) {
+        checkIndex(index);
+        return chunks[(int)(index >>> CHUNK_BITS)].get((int)(index & CHUNK_MASK));
+    }
+
+    void set(long index, double value) {
+        checkIndex(index);
+        chunks[(int)(index >>> CHUNK_BITS)].put((int)(index & CHUNK_MASK), value);
+    }
+
+    void fill(double value) {
+        for (DoubleBuffer chunk : chunks) {
+            int length = chunk.capacity();
+            for (int i = 0; i < length; i++) chunk.put(i, value);
+        }
+    }
+
+    double sum() {
+        double sum = 0.0;
+        for (DoubleBuffer chunk : chunks) {
+            int length = chunk.capacity();
+            for (int i = 0; i < length; i++) sum += chunk.get(i);
+        }
+        return sum;
+    }
+
+    LoxArray copy() {
+        LoxArray copy = new LoxArray(size);
+        copy(this, 0, copy, 0, size);
+        return copy;
+    }
+
+    // Like System.arraycopy.
+    static void copy(LoxArray from, long fromIndex, LoxArray to, long toIndex, long length) {
+        if (fromIndex + length > from.size || toIndex + length > to.size) {
+            throw new NativeError("Array copy out of bounds.");
+        }
+
+        if (from == to && fromIndex < toIndex + length && toIndex < fromIndex + length) {
+            // Overlapping, copy one by one in the direction that does not overwrite the source.
+            if (fromIndex < toIndex) {
+                for (long i = length - 1; i >= 0; i--) to.set(toIndex + i, from.get(fromIndex + i));
+            } else {
+                for (long i = 0; i < length; i++) to.set(toIndex + i, from.get(fromIndex + i));
+            }
+            return;
+        }
+
+        // Bulk copy as much as both chunks at the current positions allow.
+        while (length > 0) {
+            DoubleBuffer source = from.chunks[(int)(fromIndex >>> CHUNK_BITS)].duplicate();
+            DoubleBuffer target = to.chunks[(int)(toIndex >>> CHUNK_BITS)].duplicate();
+            int sourceOffset = (int)(fromIndex & CHUNK_MASK);
+            int targetOffset = (int)(toIndex & CHUNK_MASK);
+            int count = (int)Math.min(length, Math.min(
+                source.capacity() - sourceOffset, target.capacity() - targetOffset));
+
+            source.position(sourceOffset).limit(sourceOffset + count);
+            target.position(targetOffset);
+            target.put(source);
+
+            fromIndex += count;
+            toIndex += count;
+            length -= count;
+        }
+    }
+
+    // Sorts in place in the order of Double.compare, like Arrays.sort.
+    void sort() {
+        if (size < 2) return;
+        int depthLimit = 2 * (64 - Long.numberOfLeadingZeros(size));
+        sort(0, size - 1, depthLimit);
+    }
+
+    // Introsort: quicksort, falling back to heapsort when the partitions go bad.
+    private void sort(long low, long high, int depthLimit) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                heapSort(low, high);
+                return;
+            }
+
+            long middle = low + (high - low) / 2;
+            // Median of three as pivot, which leaves it at high - 1.
+            if (less(middle, low)) swap(middle, low);
+            if (less(high, low)) swap(high, low);
+            if (less(high, middle)) swap(high, middle);
+            swap(middle, high - 1);
+            double pivot = raw(high - 1);
+
+            long i = low;
+            long j = high - 1;
+            while (true) {
+                while (Double.compare(raw(++i), pivot) < 0) {}
+                while (Double.compare(pivot, raw(--j)) < 0) {}
+                if (i >= j) break;
+                swap(i, j);
+            }
+            swap(i, high - 1);
+
+            // Recurse into the smaller half, loop on the larger one.
+            if (i - low < high - i) {
+                sort(low, i - 1, depthLimit);
+                low = i + 1;
+            } else {
+                sort(i + 1, high, depthLimit);
+                high = i - 1;
+            }
+        }
+        insertionSort(low, high);
+    }
+
+    private void insertionSort(long low, long high) {
+        for (long i = low + 1; i <= high; i++) {
+            double value = raw(i);
+            long j = i - 1;
+            while (j >= low && Double.compare(raw(j), value) > 0) {
+                store(j + 1, raw(j));
+                j--;
+            }
+            store(j + 1, value);
+        }
+    }
+
+    private void heapSort(long low, long high) {
+        long count = high - low + 1;
+        for (long i = count / 2 - 1; i >= 0; i--) siftDown(low, i, count);
+        for (long end = count - 1; end > 0; end--) {
+            swap(low, low + end);
+            siftDown(low, 0, end);
+        }
+    }
+
+    private void siftDown(long base, long root, long count) {
+        while (2 * root + 1 < count) {
+            long child = 2 * root + 1;
+            if (child + 1 < count && less(base + child, base + child + 1)) child++;
+            if (!less(base + root, base + child)) return;
+            swap(base + root, base + child);
+            root = child;
+        }
+    }
+
+    private boolean less(long a, long b) {
+        return Double.compare(raw(a), raw(b)) < 0;
+    }
+
+    private void swap(long a, long b) {
+        double temp = raw(a);
+        store(a, raw(b));
+        store(b, temp);
+    }
+
+    // Element access without the bounds check, for the sort.
+    private double raw(long index) {
+        return chunks[(int)(index >>> CHUNK_BITS)].get((int)(index & CHUNK_MASK));
+    }
+
+    private void store(long index, double value) {
+        chunks[(int)(index >>> CHUNK_BITS)].put((int)(index & CHUNK_MASK), value);
+    }
+
+    private void checkIndex(long index) {
+        if (index >= size) throw new NativeError("Array index " + index + " out of bounds for size " + size + ".");
+    }
+
+    // Direct buffers are not serializable, so write the numbers themselves, see Snapshot.
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (DoubleBuffer chunk : chunks) {
+            int length = chunk.capacity();
+            for (int i = 0; i < length; i++) out.writeDouble(chunk.get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        allocate();
+        for (DoubleBuffer chunk : chunks) {
+            int length = chunk.capacity();
+            for (int i = 0; i < length; i++) chunk.put(i, in.readDouble());
+        }
+    }
+
+    static LoxArray of(Object value) {
+        if (value instanceof LoxArray) return (LoxArray)value;
+        throw new NativeError("Expected an array.");
+    }
+
+    @Override
+    public String toString() {
+        return "<array " + size + ">";
+    }
+}
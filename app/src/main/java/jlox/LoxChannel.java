@@ -0,0 +1,77 @@
+package jlox;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A bounded queue of values for passing values between tasks, see LoxTask.
+// Sending blocks while the channel is full, receiving while it is empty.
+// Once closed, receiving drains what is left and then gives nil.
+class LoxChannel {
+    private final int capacity;
+    private final ArrayDeque<Object> values;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private boolean closed = false;
+
+    // ArrayDeque cannot hold null, so nil travels as this.
+    private static final Object NIL = new Object();
+
+    LoxChannel(int capacity) {
+        this.capacity = capacity;
+        this.values = new ArrayDeque<>(capacity);
+    }
+
+    void send(Object value) {
+        lock.lock();
+        try {
+            while (values.size() == capacity && !closed) notFull.await();
+            if (closed) throw new NativeError("Can't send on a closed channel.");
+            values.addLast(value == null ? NIL : value);
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NativeError("Interrupted while sending.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Object receive() {
+        lock.lock();
+        try {
+            while (values.isEmpty() && !closed) notEmpty.await();
+            if (values.isEmpty()) return null;
+            Object value = values.removeFirst();
+            notFull.signal();
+            return value == NIL ? null : value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NativeError("Interrupted while receiving.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static LoxChannel of(Object value) {
+        if (value instanceof LoxChannel) return (LoxChannel)value;
+        throw new NativeError("Expected a channel.");
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
@@ -1,17 +1,23 @@
 package jlox;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
-class LoxClass implements LoxCallable {
+class LoxClass implements LoxCallable, Serializable {
+    private static final long serialVersionUID = 1L;
+
     final String name;
     final LoxClass superclass;
     private final Map<String, LoxFunction> methods;
+    // Where the class is declared, for Events.
+    private final int line;
 
-    LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) {
+    LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods, int line) {
         this.superclass = superclass;
         this.name = name;
         this.methods = methods;
+        this.line = line;
     }
 
     LoxFunction findMethod(String name) {
@@ -31,6 +37,12 @@ class LoxClass implements LoxCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         LoxInstance instance = new LoxInstance(this);
+        Events.Instantiation event = new Events.Instantiation();
+        if (event.shouldCommit()) {
+            event.className = name;
+            event.line = line;
+            event.commit();
+        }
         LoxFunction initializer = findMethod("init");
         if (initializer != null) {
             initializer.bind(instance).call(interpreter, arguments);
@@ -0,0 +1,301 @@
+package jlox;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+// An immutable map, made by the dict native. Keys are equal when == says they are,
+// like for maps. Changing a dict makes a new one, which shares all but O(log32 n)
+// of its structure with the old one.
+//
+// The entries live in a hash array mapped trie: every node uses 5 bits of the hash
+// to pick a slot, and a bitmap of which slots are used, so nodes only hold the
+// slots they need. Keys whose whole hashes are the same end up in a collision node.
+// Like vectors, dicts of immutable values are shared between isolates, see Isolate.
+class LoxDict implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    static final LoxDict EMPTY = new LoxDict(null, 0, true);
+
+    private final Node root;
+    private final int size;
+    private final boolean shareable;
+
+    private LoxDict(Node root, int size, boolean shareable) {
+        this.root = root;
+        this.size = size;
+        this.shareable = shareable;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isShareable() {
+        return shareable;
+    }
+
+    boolean containsKey(Object key) {
+        return root != null && root.find(LoxMap.hash(key), key, 0) != null;
+    }
+
+    Object get(Object key) {
+        if (root == null) return null;
+        Leaf leaf = root.find(LoxMap.hash(key), key, 0);
+        return leaf == null ? null : leaf.value;
+    }
+
+    LoxDict put(Object key, Object value) {
+        Leaf leaf = new Leaf(LoxMap.hash(key), key, value);
+        boolean shareable = this.shareable && Isolate.isShareable(key) && Isolate.isShareable(value);
+        if (root == null) {
+            return new LoxDict(new BitmapNode(bit(leaf.hash, 0), new Object[] { leaf }), 1, shareable);
+        }
+
+        boolean[] added = { false };
+        Node newRoot = root.put(leaf, 0, added);
+        return new LoxDict(newRoot, added[0] ? size + 1 : size, shareable);
+    }
+
+    LoxDict remove(Object key) {
+        if (root == null) return this;
+        Node newRoot = root.remove(LoxMap.hash(key), key, 0);
+        if (newRoot == root) return this;
+        // Removing never makes a dict less shareable, but finding out if it became more is not worth it.
+        return new LoxDict(newRoot, size - 1, shareable);
+    }
+
+    LoxList keys() {
+        LoxList list = new LoxList(size);
+        if (root != null) root.collect(list, true);
+        return list;
+    }
+
+    LoxList values() {
+        LoxList list = new LoxList(size);
+        if (root != null) root.collect(list, false);
+        return list;
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static class Leaf implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int hash;
+        final Object key;
+        final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean matches(int hash, Object key) {
+            return this.hash == hash && (this.key == key || Interpreter.isEqual(this.key, key));
+        }
+    }
+
+    private interface Node extends Serializable {
+        Leaf find(int hash, Object key, int shift);
+        // Sets added[0] if the key was not there before.
+        Node put(Leaf leaf, int shift, boolean[] added);
+        // Returns this if the key was not there, or null when the node becomes empty.
+        Node remove(int hash, Object key, int shift);
+        void collect(LoxList list, boolean keys);
+    }
+
+    // Every slot is either a Leaf, or a Node for the keys sharing the slot.
+    private static class BitmapNode implements Node {
+        private static final long serialVersionUID = 1L;
+
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @Override
+        public Leaf find(int hash, Object key, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return null;
+            Object slot = slots[index(bit)];
+            if (slot instanceof Leaf) return ((Leaf)slot).matches(hash, key) ? (Leaf)slot : null;
+            return ((Node)slot).find(hash, key, shift + BITS);
+        }
+
+        @Override
+        public Node put(Leaf leaf, int shift, boolean[] added) {
+            int bit = bit(leaf.hash, shift);
+            int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = leaf;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Leaf) {
+                Leaf existing = (Leaf)slot;
+                if (existing.matches(leaf.hash, leaf.key)) {
+                    replacement = leaf;
+                } else {
+                    added[0] = true;
+                    replacement = merge(existing, leaf, shift + BITS);
+                }
+            } else {
+                replacement = ((Node)slot).put(leaf, shift + BITS, added);
+            }
+            return with(index, replacement);
+        }
+
+        @Override
+        public Node remove(int hash, Object key, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return this;
+            int index = index(bit);
+            Object slot = slots[index];
+
+            Object replacement;
+            if (slot instanceof Leaf) {
+                if (!((Leaf)slot).matches(hash, key)) return this;
+                replacement = null;
+            } else {
+                Node child = (Node)slot;
+                replacement = child.remove(hash, key, shift + BITS);
+                if (replacement == child) return this;
+            }
+
+            if (replacement != null) return with(index, replacement);
+            if (slots.length == 1) return null;
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, newSlots);
+        }
+
+        @Override
+        public void collect(LoxList list, boolean keys) {
+            for (Object slot : slots) {
+                if (slot instanceof Leaf) {
+                    list.add(keys ? ((Leaf)slot).key : ((Leaf)slot).value);
+                } else {
+                    ((Node)slot).collect(list, keys);
+                }
+            }
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private BitmapNode with(int index, Object slot) {
+            Object[] newSlots = slots.clone();
+            newSlots[index] = slot;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        private static Node merge(Leaf a, Leaf b, int shift) {
+            if (a.hash == b.hash) return new CollisionNode(a.hash, new Leaf[] { a, b });
+
+            int bitA = bit(a.hash, shift);
+            int bitB = bit(b.hash, shift);
+            if (bitA == bitB) return new BitmapNode(bitA, new Object[] { merge(a, b, shift + BITS) });
+            // Slots are ordered by their bit.
+            Object[] slots = Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[] { a, b } : new Object[] { b, a };
+            return new BitmapNode(bitA | bitB, slots);
+        }
+    }
+
+    // Keys with the very same hash.
+    private static class CollisionNode implements Node {
+        private static final long serialVersionUID = 1L;
+
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        @Override
+        public Leaf find(int hash, Object key, int shift) {
+            for (Leaf leaf : leaves) {
+                if (leaf.matches(hash, key)) return leaf;
+            }
+            return null;
+        }
+
+        @Override
+        public Node put(Leaf leaf, int shift, boolean[] added) {
+            if (leaf.hash != hash) {
+                // Another hash with the same bits so far, so split by the next bits.
+                return new BitmapNode(bit(hash, shift), new Object[] { this }).put(leaf, shift, added);
+            }
+
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].matches(leaf.hash, leaf.key)) {
+                    Leaf[] newLeaves = leaves.clone();
+                    newLeaves[i] = leaf;
+                    return new CollisionNode(hash, newLeaves);
+                }
+            }
+            added[0] = true;
+            Leaf[] newLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+            newLeaves[leaves.length] = leaf;
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        public Node remove(int hash, Object key, int shift) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (!leaves[i].matches(hash, key)) continue;
+                if (leaves.length == 1) return null;
+                Leaf[] newLeaves = new Leaf[leaves.length - 1];
+                System.arraycopy(leaves, 0, newLeaves, 0, i);
+                System.arraycopy(leaves, i + 1, newLeaves, i, leaves.length - i - 1);
+                return new CollisionNode(hash, newLeaves);
+            }
+            return this;
+        }
+
+        @Override
+        public void collect(LoxList list, boolean keys) {
+            for (Leaf leaf : leaves) list.add(keys ? leaf.key : leaf.value);
+        }
+    }
+
+    static LoxDict of(Object value) {
+        if (value instanceof LoxDict) return (LoxDict)value;
+        throw new NativeError("Expected a dict.");
+    }
+
+    @Override
+    public String toString() {
+        LoxList keys = keys();
+        LoxList values = values();
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) builder.append(", ");
+            Object key = keys.get(i);
+            Object value = values.get(i);
+            builder.append(key == null ? "nil" : key.toString());
+            builder.append(": ");
+            builder.append(value == null ? "nil" : value.toString());
+        }
+        return builder.append("}").toString();
+    }
+}
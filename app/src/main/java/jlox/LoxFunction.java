@@ -1,51 +1,93 @@
 package jlox;
 
+import java.io.Serializable;
 import java.util.List;
 
-class LoxFunction implements LoxCallable {
+class LoxFunction implements LoxCallable, Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Book uses this, but we want to support lambdas aswell.
     // Since these can come from expressions aswell, we store the fields separately instead.
     //private final Stmt.Function declaration;
     private final String name;
     private final List<Token> params;
-    private final List<Stmt> body;
+    private final FunctionBody body;
     private final Environment closure;
     private final boolean isInitializer;
+    // Of the module declaring the function, see Interpreter.directory.
+    private final String directory;
+    // The frame of this function in profiles, see Profiler.
+    private transient String frame;
 
-    LoxFunction(Expr.Lambda declaration, Environment closure, boolean isInitializer) {
+    LoxFunction(Expr.Lambda declaration, Environment closure, String directory, boolean isInitializer) {
         this.name = "lambda";
         this.params = declaration.params;
         this.body = declaration.body;
         this.closure = closure;
+        this.directory = directory;
         this.isInitializer = isInitializer;
+        if (Allocations.enabled) Allocations.allocated(this, Allocations.Kind.CLOSURE);
     }
 
-    LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+    LoxFunction(Stmt.Function declaration, Environment closure, String directory, boolean isInitializer) {
         this.name = declaration.name.lexeme;
         this.params = declaration.params;
         this.body = declaration.body;
         this.closure = closure;
+        this.directory = directory;
         this.isInitializer = isInitializer;
+        if (Allocations.enabled) Allocations.allocated(this, Allocations.Kind.CLOSURE);
     }
 
-    LoxFunction(String name, List<Token> params, List<Stmt> body, Environment closure, boolean isInitializer) {
+    LoxFunction(String name, List<Token> params, FunctionBody body, Environment closure, String directory, boolean isInitializer) {
         this.name = name;
         this.params = params;
         this.body = body;
         this.closure = closure;
+        this.directory = directory;
         this.isInitializer = isInitializer;
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        if (Stats.enabled) Stats.calls.increment();
+        Events.FunctionCall event = new Events.FunctionCall();
+        event.begin();
+        String caller = interpreter.directory;
+        interpreter.directory = directory;
+        try {
+            if (!Profiler.enabled) return invoke(interpreter, arguments);
+
+            if (frame == null) frame = name + ":" + body.line();
+            Profiler.enter(frame);
+            try {
+                return invoke(interpreter, arguments);
+            } finally {
+                Profiler.exit();
+            }
+        } finally {
+            interpreter.directory = caller;
+            event.end();
+            if (event.shouldCommit()) {
+                event.function = name;
+                event.line = body.line();
+                event.commit();
+            }
+        }
+    }
+
+    private Object invoke(Interpreter interpreter, List<Object> arguments) {
         Environment environment = new Environment(closure);
         for (int i = 0; i < params.size(); i++) {
             // Set each parameters value according to the arguments received
             environment.define(params.get(i).lexeme, arguments.get(i));
         }
 
+        List<Stmt> statements = body.statements(interpreter);
+        if (body.isGenerator()) return new LoxGenerator(interpreter, statements, environment);
+
         try {
-            interpreter.executeBlock(body, environment);
+            interpreter.executeBlock(statements, environment);
         } catch (Return returnValue) {
             if (isInitializer)
                 return closure.getAt(0, "this");
@@ -58,9 +100,12 @@ class LoxFunction implements LoxCallable {
     }
 
     LoxFunction bind(LoxInstance instance) {
+        if (Stats.enabled) Stats.boundMethods.increment();
         Environment environment = new Environment(closure);
         environment.define("this", instance);
-        return new LoxFunction(name, params, body, environment, isInitializer);
+        LoxFunction method = new LoxFunction(name, params, body, environment, directory, isInitializer);
+        if (Allocations.enabled) Allocations.allocated(method, Allocations.Kind.BOUND_METHOD);
+        return method;
     }
 
     @Override
@@ -0,0 +1,194 @@
+package jlox;
+
+import java.lang.ref.Cleaner;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+// What calling a function with a yield statement returns, see FunctionBody.
+//
+// The body runs on a thread of its own (virtual when available, see LoxTask), taking
+// turns with the code that consumes the generator: next hands control to the body,
+// yield hands control and the value back. The body runs only while a value is asked
+// for, so a generator can produce an endless stream without buffering any of it.
+//
+// A generator that is dropped before it finishes would leave its thread waiting in
+// yield forever, so once the generator is garbage collected, the body is told to unwind.
+// That only happens if nothing but the suspended body itself can reach the generator:
+// the thread of the body is a GC root while it waits, and its interpreter holds the
+// globals. So the bodies still waiting when a run ends are unwound too, see abandonAll.
+class LoxGenerator {
+    private static final Cleaner cleaner = Cleaner.create();
+
+    private final Producer producer;
+    private boolean fetched = false;
+    private boolean finished = false;
+    private Object next = null;
+
+    LoxGenerator(Interpreter interpreter, List<Stmt> body, Environment environment) {
+        producer = new Producer(interpreter, body, environment);
+        // Holds the handoff only. The producer holds the environment of the body, which
+        // can reach this generator, which would then never become unreachable.
+        cleaner.register(this, producer.handoff::abandon);
+    }
+
+    // Runs the body up to its next yield, if not done already.
+    synchronized boolean hasNext() {
+        if (fetched || finished) return !finished;
+
+        Message message;
+        try {
+            message = producer.resume();
+        } catch (RuntimeException error) {
+            // The body ended, with a RuntimeError or the NativeError run made of another failure.
+            finished = true;
+            throw error;
+        }
+        if (message == Message.END) {
+            finished = true;
+        } else {
+            next = message.value;
+            fetched = true;
+        }
+        return !finished;
+    }
+
+    synchronized Object next() {
+        if (!hasNext()) throw new NativeError("Generator is done.");
+        Object value = next;
+        next = null;
+        fetched = false;
+        return value;
+    }
+
+    static LoxGenerator of(Object value) {
+        if (value instanceof LoxGenerator) return (LoxGenerator)value;
+        throw new NativeError("Expected a generator.");
+    }
+
+    // Unwinds the bodies of all generators started by interpreter, or its forks, that
+    // did not finish. For when the program is done, but the JVM goes on, like in the
+    // Server or an isolate. Their generators must not be used any more.
+    static void abandonAll(Interpreter interpreter) {
+        for (Handoff handoff : interpreter.runningGenerators) {
+            if (interpreter.runningGenerators.remove(handoff)) handoff.abandon();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<generator>";
+    }
+
+    private static class Message {
+        static final Message END = new Message(null, null);
+
+        final Object value;
+        // A RuntimeError, or a NativeError for the call of the native that resumed.
+        final RuntimeException error;
+
+        Message(Object value, RuntimeException error) {
+            this.value = value;
+            this.error = error;
+        }
+    }
+
+    // Unwinds the body of an abandoned generator.
+    private static class Abandoned extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Abandoned() {
+            super(null, null, false, false);
+        }
+    }
+
+    // How the consumer asks the body for the next value: true for the next value, false
+    // to unwind the body of a generator that was dropped.
+    static class Handoff {
+        final SynchronousQueue<Boolean> demands = new SynchronousQueue<>();
+        volatile boolean started = false;
+        volatile boolean finished = false;
+
+        // Run by the Cleaner. An unreachable generator is not being resumed, so a body
+        // that started and did not finish is waiting in yield, or about to.
+        void abandon() {
+            if (!started || finished) return;
+            try {
+                demands.offer(Boolean.FALSE, 1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // The side of a generator running the body.
+    static class Producer {
+        private final Interpreter interpreter;
+        private final List<Stmt> body;
+        private final Environment environment;
+        private final SynchronousQueue<Message> values = new SynchronousQueue<>();
+        private final Handoff handoff = new Handoff();
+
+        Producer(Interpreter interpreter, List<Stmt> body, Environment environment) {
+            this.interpreter = interpreter.fork();
+            this.interpreter.generator = this;
+            this.body = body;
+            this.environment = environment;
+        }
+
+        // Called by the consumer, returns the next value or END.
+        Message resume() {
+            try {
+                if (!handoff.started) {
+                    handoff.started = true;
+                    interpreter.runningGenerators.add(handoff);
+                    LoxTask.executor.submit(this::run);
+                } else {
+                    handoff.demands.put(Boolean.TRUE);
+                }
+                Message message = values.take();
+                if (message.error != null) throw message.error;
+                return message;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NativeError("Interrupted while waiting for a generator.");
+            }
+        }
+
+        // Called by the body on its own thread, see Interpreter.visitYieldStmt.
+        void produce(Object value) {
+            try {
+                values.put(new Message(value, null));
+                if (!handoff.demands.take()) throw new Abandoned();
+            } catch (InterruptedException e) {
+                throw new Abandoned();
+            }
+        }
+
+        private void run() {
+            // Whatever ends the body, the consumer waiting for a value must hear of it.
+            Message last = Message.END;
+            try {
+                interpreter.executeBlock(body, environment);
+            } catch (Return returnValue) {
+                // A plain return ends the generator, the Resolver rejects return values.
+            } catch (Abandoned abandoned) {
+                last = null;
+            } catch (RuntimeError error) {
+                last = new Message(null, error);
+            } catch (StackOverflowError error) {
+                last = new Message(null, new NativeError("Stack overflow in generator."));
+            } catch (Throwable error) {
+                last = new Message(null, new NativeError("Generator failed: " + error));
+            } finally {
+                handoff.finished = true;
+                interpreter.runningGenerators.remove(handoff);
+                if (last != null) {
+                    try {
+                        values.put(last);
+                    } catch (InterruptedException ignored) {}
+                }
+            }
+        }
+    }
+}
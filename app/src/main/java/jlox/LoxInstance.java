@@ -1,19 +1,33 @@
 package jlox;
 
-import java.util.HashMap;
+import java.io.Serializable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class LoxInstance implements Serializable {
+    private static final long serialVersionUID = 1L;
 
-class LoxInstance {
     private LoxClass klass;
-    private final Map<String, Object> fields = new HashMap<>();
+    // Concurrent, so tasks can share instances, see LoxTask. It can't hold null,
+    // so nil fields hold Nil instead.
+    private final Map<String, Object> fields = new ConcurrentHashMap<>();
+
+    private enum Nil { NIL }
     
     LoxInstance(LoxClass klass) {
         this.klass = klass;
+        if (Stats.enabled) Stats.instances.increment();
+        if (Allocations.enabled) Allocations.allocated(this, Allocations.Kind.INSTANCE);
+    }
+
+    int fieldCount() {
+        return fields.size();
     }
 
     Object get(Token name) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+        Object value = fields.get(name.lexeme);
+        if (value != null) {
+            return value == Nil.NIL ? null : value;
         }
 
         LoxFunction method = klass.findMethod(name.lexeme);
@@ -23,7 +37,7 @@ class LoxInstance {
     }
 
     void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+        fields.put(name.lexeme, value == null ? Nil.NIL : value);
     }
 
     @Override
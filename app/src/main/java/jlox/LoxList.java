@@ -0,0 +1,96 @@
+package jlox;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+// A growable list, made by the list native.
+//
+// As long as a list only holds numbers, it keeps them unboxed in a double[]. Storing
+// anything else switches it to an Object[] for good.
+//
+// Lists are not safe to change from several tasks at once, see LoxTask.
+class LoxList implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private double[] numbers;
+    private Object[] objects = null;
+    private int size = 0;
+
+    LoxList() {
+        this(8);
+    }
+
+    LoxList(int capacity) {
+        numbers = new double[Math.max(capacity, 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    Object get(int index) {
+        checkIndex(index);
+        if (objects == null) return numbers[index];
+        return objects[index];
+    }
+
+    void set(int index, Object value) {
+        checkIndex(index);
+        if (objects == null && value instanceof Double) {
+            numbers[index] = (double)value;
+            return;
+        }
+        if (objects == null) generalize();
+        objects[index] = value;
+    }
+
+    void add(Object value) {
+        if (objects == null && value instanceof Double) {
+            if (size == numbers.length) numbers = Arrays.copyOf(numbers, size * 2);
+            numbers[size++] = (double)value;
+            return;
+        }
+        if (objects == null) generalize();
+        if (size == objects.length) objects = Arrays.copyOf(objects, size * 2);
+        objects[size++] = value;
+    }
+
+    Object removeLast() {
+        if (size == 0) throw new NativeError("Can't pop from an empty list.");
+        Object value = get(size - 1);
+        if (objects != null) objects[size - 1] = null;
+        size--;
+        return value;
+    }
+
+    // True if every element is kept unboxed, see numbers.
+    boolean isNumeric() {
+        return objects == null;
+    }
+
+    private void generalize() {
+        objects = new Object[numbers.length];
+        for (int i = 0; i < size; i++) objects[i] = numbers[i];
+        numbers = null;
+    }
+
+    private void checkIndex(int index) {
+        if (index >= size) throw new NativeError("List index " + index + " out of bounds for size " + size + ".");
+    }
+
+    static LoxList of(Object value) {
+        if (value instanceof LoxList) return (LoxList)value;
+        throw new NativeError("Expected a list.");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append(", ");
+            Object value = get(i);
+            builder.append(value == null ? "nil" : value.toString());
+        }
+        return builder.append("]").toString();
+    }
+}
@@ -0,0 +1,207 @@
+package jlox;
+
+import java.io.Serializable;
+
+// A hash map from any value to any value, made by the map native. Keys are equal
+// when == says they are, see Interpreter.isEqual. Iteration order is unspecified.
+//
+// The table uses open addressing with linear probing. As long as every key is a
+// number, the keys are kept unboxed as the bits of their double, and compared
+// without calling equals. The first key of another type switches the map to
+// boxed keys for good. Strings compare by reference before equals, which is enough
+// for keys written as literals, as the Lexer interns them. Strings made at runtime,
+// or read from an AST cache, need the equals.
+//
+// Maps are not safe to change from several tasks at once, see LoxTask.
+class LoxMap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+
+    private byte[] states;
+    private long[] numberKeys;
+    private Object[] keys = null;
+    private Object[] values;
+    private int size = 0;
+    // Full and deleted slots, which both make probing longer.
+    private int used = 0;
+
+    LoxMap() {
+        this(16);
+    }
+
+    LoxMap(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) * 2;
+        states = new byte[tableSize];
+        numberKeys = new long[tableSize];
+        values = new Object[tableSize];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    Object get(Object key) {
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : null;
+    }
+
+    void put(Object key, Object value) {
+        if (keys == null && !(key instanceof Double)) generalize();
+        if ((used + 1) * 2 > states.length) rehash(size + 1 > states.length / 4 ? states.length * 2 : states.length);
+
+        int mask = states.length - 1;
+        int slot = hash(key) & mask;
+        int firstDeleted = -1;
+        while (states[slot] != EMPTY) {
+            if (states[slot] == DELETED) {
+                if (firstDeleted < 0) firstDeleted = slot;
+            } else if (matches(slot, key)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (firstDeleted >= 0) {
+            slot = firstDeleted;
+        } else {
+            used++;
+        }
+        states[slot] = FULL;
+        if (keys == null) {
+            numberKeys[slot] = Double.doubleToLongBits((double)key);
+        } else {
+            keys[slot] = key;
+        }
+        values[slot] = value;
+        size++;
+    }
+
+    Object remove(Object key) {
+        int slot = find(key);
+        if (slot < 0) return null;
+
+        Object value = values[slot];
+        states[slot] = DELETED;
+        values[slot] = null;
+        if (keys != null) keys[slot] = null;
+        size--;
+        return value;
+    }
+
+    LoxList keys() {
+        LoxList list = new LoxList(size);
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] == FULL) list.add(keyAt(slot));
+        }
+        return list;
+    }
+
+    LoxList values() {
+        LoxList list = new LoxList(size);
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] == FULL) list.add(values[slot]);
+        }
+        return list;
+    }
+
+    private int find(Object key) {
+        // A number map can't hold anything else.
+        if (keys == null && !(key instanceof Double)) return -1;
+
+        int mask = states.length - 1;
+        int slot = hash(key) & mask;
+        while (states[slot] != EMPTY) {
+            if (states[slot] == FULL && matches(slot, key)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean matches(int slot, Object key) {
+        if (keys == null) return numberKeys[slot] == Double.doubleToLongBits((double)key);
+
+        Object other = keys[slot];
+        if (other == key) return true;
+        return Interpreter.isEqual(other, key);
+    }
+
+    private Object keyAt(int slot) {
+        if (keys == null) return Double.longBitsToDouble(numberKeys[slot]);
+        return keys[slot];
+    }
+
+    // Also used by LoxDict.
+    static int hash(Object key) {
+        if (key == null) return 0;
+        int h;
+        if (key instanceof Double) {
+            // Same as Double.hashCode, so boxed and unboxed keys land in the same slots.
+            long bits = Double.doubleToLongBits((double)key);
+            h = (int)(bits ^ (bits >>> 32));
+        } else {
+            h = key.hashCode();
+        }
+        // Spread the high bits, as the table is indexed with the low ones.
+        return h ^ (h >>> 16);
+    }
+
+    private void generalize() {
+        keys = new Object[states.length];
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] == FULL) keys[slot] = Double.longBitsToDouble(numberKeys[slot]);
+        }
+        numberKeys = null;
+    }
+
+    private void rehash(int tableSize) {
+        byte[] oldStates = states;
+        long[] oldNumberKeys = numberKeys;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        states = new byte[tableSize];
+        values = new Object[tableSize];
+        if (oldKeys == null) {
+            numberKeys = new long[tableSize];
+        } else {
+            keys = new Object[tableSize];
+        }
+        size = 0;
+        used = 0;
+
+        for (int slot = 0; slot < oldStates.length; slot++) {
+            if (oldStates[slot] != FULL) continue;
+            Object key = oldKeys == null ? Double.longBitsToDouble(oldNumberKeys[slot]) : oldKeys[slot];
+            put(key, oldValues[slot]);
+        }
+    }
+
+    static LoxMap of(Object value) {
+        if (value instanceof LoxMap) return (LoxMap)value;
+        throw new NativeError("Expected a map.");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        boolean first = true;
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] != FULL) continue;
+            if (!first) builder.append(", ");
+            first = false;
+            Object key = keyAt(slot);
+            builder.append(key == null ? "nil" : key.toString());
+            builder.append(": ");
+            builder.append(values[slot] == null ? "nil" : values[slot].toString());
+        }
+        return builder.append("}").toString();
+    }
+}
@@ -0,0 +1,78 @@
+package jlox;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// jlox --jmx: shows the counters of Stats as the MBean jlox:type=Interpreter, so a
+// long running jlox, like a --server, can be watched with jconsole or any JMX tool.
+// Registering it turns on the counting of Stats.
+class LoxMetrics implements LoxMetricsMBean {
+    static final String NAME = "jlox:type=Interpreter";
+
+    static void register() {
+        Stats.enabled = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new StandardMBean(new LoxMetrics(), LoxMetricsMBean.class), new ObjectName(NAME));
+        } catch (JMException e) {
+            System.err.println("Could not register the " + NAME + " MBean: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getFunctionCalls() {
+        return Stats.calls.sum();
+    }
+
+    @Override
+    public long getInstances() {
+        return Stats.instances.sum();
+    }
+
+    @Override
+    public long getEnvironments() {
+        return Stats.environments.sum();
+    }
+
+    @Override
+    public long getBoundMethods() {
+        return Stats.boundMethods.sum();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return Stats.runtimeErrors.sum();
+    }
+
+    @Override
+    public long getScriptsRun() {
+        return Stats.scriptsRun.sum();
+    }
+
+    @Override
+    public int getRunningScripts() {
+        return Stats.runningScripts.get();
+    }
+
+    @Override
+    public double getLexMillis() {
+        return Stats.wallTime(Stats.Phase.LEX) / 1e6;
+    }
+
+    @Override
+    public double getParseMillis() {
+        return Stats.wallTime(Stats.Phase.PARSE) / 1e6;
+    }
+
+    @Override
+    public double getResolveMillis() {
+        return Stats.wallTime(Stats.Phase.RESOLVE) / 1e6;
+    }
+
+    @Override
+    public double getExecuteMillis() {
+        return Stats.wallTime(Stats.Phase.EXECUTE) / 1e6;
+    }
+}
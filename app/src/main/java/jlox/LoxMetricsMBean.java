@@ -0,0 +1,19 @@
+package jlox;
+
+// The attributes of the jlox:type=Interpreter MBean, see LoxMetrics.
+// Standard MBean interfaces have to be public.
+public interface LoxMetricsMBean {
+    long getFunctionCalls();
+    long getInstances();
+    long getEnvironments();
+    long getBoundMethods();
+    long getRuntimeErrors();
+    long getScriptsRun();
+    int getRunningScripts();
+
+    // Wall time spent in every phase so far, summed over all scripts.
+    double getLexMillis();
+    double getParseMillis();
+    double getResolveMillis();
+    double getExecuteMillis();
+}
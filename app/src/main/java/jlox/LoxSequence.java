@@ -0,0 +1,164 @@
+package jlox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A lazy sequence of values, made by the range, seq and lines natives.
+//
+// seq_map, seq_filter and seq_take only describe a new sequence, nothing runs until
+// seq_reduce or seq_list consume it. Then every value is pushed through all the steps
+// before the source produces the next one, so a pipeline runs in a single pass and in
+// constant space, whatever the length of the source. A sequence can be consumed any
+// number of times, each time from the start of its source.
+class LoxSequence {
+    // Receives values, returns false when it wants no more of them.
+    private interface Sink {
+        boolean accept(Object value);
+    }
+
+    private interface Source {
+        void forEach(Sink sink);
+    }
+
+    private interface Step {
+        Sink wrap(Interpreter interpreter, Sink downstream);
+    }
+
+    private final Source source;
+    private final List<Step> steps;
+
+    private LoxSequence(Source source, List<Step> steps) {
+        this.source = source;
+        this.steps = steps;
+    }
+
+    // From start up to, but not including, end. Without an end the range never stops.
+    static LoxSequence range(double start, Double end) {
+        return new LoxSequence(sink -> {
+            for (double i = start; end == null || i < end; i++) {
+                if (!sink.accept(i)) return;
+            }
+        }, List.of());
+    }
+
+    // A view of a list, an array or a generator, seeing any changes made before it is consumed.
+    static LoxSequence view(Object collection) {
+        if (collection instanceof LoxList) {
+            LoxList list = (LoxList)collection;
+            return new LoxSequence(sink -> {
+                for (int i = 0; i < list.size(); i++) {
+                    if (!sink.accept(list.get(i))) return;
+                }
+            }, List.of());
+        }
+        if (collection instanceof LoxArray) {
+            LoxArray array = (LoxArray)collection;
+            return new LoxSequence(sink -> {
+                for (long i = 0; i < array.size(); i++) {
+                    if (!sink.accept(array.get(i))) return;
+                }
+            }, List.of());
+        }
+        if (collection instanceof LoxGenerator) {
+            // Unlike the others, only once: a generator can't start over.
+            LoxGenerator generator = (LoxGenerator)collection;
+            return new LoxSequence(sink -> {
+                while (generator.hasNext()) {
+                    if (!sink.accept(generator.next())) return;
+                }
+            }, List.of());
+        }
+        throw new NativeError("Expected a list, an array or a generator.");
+    }
+
+    // The lines of a file, read one at a time in the default charset, like source files
+    // are, see ModuleLoader. The file is open only while consumed. The path is relative
+    // to the module calling lines, like an import.
+    static LoxSequence lines(Interpreter interpreter, String path) {
+        Path file = Paths.get(interpreter.directory).resolve(path).normalize();
+        return new LoxSequence(sink -> {
+            try (BufferedReader reader = Files.newBufferedReader(file, Charset.defaultCharset())) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!sink.accept(line)) return;
+                }
+            } catch (IOException e) {
+                throw new NativeError("Could not read '" + file + "': " + e.getMessage());
+            }
+        }, List.of());
+    }
+
+    LoxSequence map(LoxCallable function) {
+        return then((interpreter, downstream) -> value ->
+            downstream.accept(function.call(interpreter, Arrays.asList(value)))
+        );
+    }
+
+    LoxSequence filter(LoxCallable predicate) {
+        return then((interpreter, downstream) -> value ->
+            !Interpreter.isTruthy(predicate.call(interpreter, Arrays.asList(value))) || downstream.accept(value)
+        );
+    }
+
+    LoxSequence take(long count) {
+        return then((interpreter, downstream) -> {
+            // Per run, so the sequence can be consumed again.
+            long[] taken = { 0 };
+            return value -> {
+                if (taken[0] >= count) return false;
+                taken[0]++;
+                return downstream.accept(value) && taken[0] < count;
+            };
+        });
+    }
+
+    Object reduce(Interpreter interpreter, LoxCallable function, Object initial) {
+        Object[] accumulator = { initial };
+        run(interpreter, value -> {
+            accumulator[0] = function.call(interpreter, Arrays.asList(accumulator[0], value));
+            return true;
+        });
+        return accumulator[0];
+    }
+
+    LoxList toList(Interpreter interpreter) {
+        LoxList list = new LoxList();
+        run(interpreter, value -> {
+            list.add(value);
+            return true;
+        });
+        return list;
+    }
+
+    private LoxSequence then(Step step) {
+        List<Step> steps = new ArrayList<>(this.steps);
+        steps.add(step);
+        return new LoxSequence(source, steps);
+    }
+
+    // Fuses the steps into one sink, innermost last, and lets the source drive it.
+    private void run(Interpreter interpreter, Sink terminal) {
+        Sink sink = terminal;
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            sink = steps.get(i).wrap(interpreter, sink);
+        }
+        source.forEach(sink);
+    }
+
+    static LoxSequence of(Object value) {
+        if (value instanceof LoxSequence) return (LoxSequence)value;
+        throw new NativeError("Expected a sequence.");
+    }
+
+    @Override
+    public String toString() {
+        return "<sequence>";
+    }
+}
@@ -0,0 +1,107 @@
+package jlox;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// A Lox function running on its own thread, made by the spawn native.
+//
+// Tasks share the globals and whatever their function closes over with the code that
+// spawned them. Fields of instances are safe to use from many tasks at once, but
+// variables are not: assigning a variable that another task reads, or declaring
+// globals while tasks run, is racy. Pass values between tasks with channels instead.
+//
+// A task that fails and is never joined is reported when the interpreter that spawned
+// it finishes, see reportFailed. Tasks still running by then are not waited for.
+class LoxTask {
+    // Also runs the bodies of generators, see LoxGenerator.
+    static final ExecutorService executor = newExecutor();
+
+    private Future<Object> result;
+    // The failed tasks of the interpreter that spawned this one, see reportFailed.
+    private final Set<LoxTask> failed;
+    private volatile Throwable failure = null;
+
+    private LoxTask(Set<LoxTask> failed) {
+        this.failed = failed;
+    }
+
+    static LoxTask spawn(Interpreter interpreter, Object callee) {
+        if (!(callee instanceof LoxCallable) || ((LoxCallable)callee).arity() != 0) {
+            throw new NativeError("Can only spawn functions without parameters.");
+        }
+
+        Interpreter forked = interpreter.fork();
+        LoxCallable function = (LoxCallable)callee;
+        LoxTask task = new LoxTask(interpreter.failedTasks);
+        task.result = executor.submit(() -> {
+            try {
+                return function.call(forked, new ArrayList<>());
+            } catch (RuntimeException | Error e) {
+                // Until it is joined. Added before the future completes, so join removes it.
+                task.failure = e;
+                task.failed.add(task);
+                throw e;
+            }
+        });
+        return task;
+    }
+
+    // Waits for the task, and returns the value its function returned.
+    // If the task failed, its error is raised again in the joining task.
+    Object join() {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NativeError("Interrupted while joining a task.");
+        } catch (ExecutionException e) {
+            failed.remove(this);
+            if (e.getCause() instanceof RuntimeError) throw (RuntimeError)e.getCause();
+            throw new NativeError("Task failed: " + e.getCause());
+        }
+    }
+
+    // Reports the tasks spawned by interpreter, or its forks, that failed and were not
+    // joined, as if they had failed in the interpreter itself.
+    static void reportFailed(Interpreter interpreter) {
+        for (LoxTask task : interpreter.failedTasks) {
+            // Unless a task joined it in the meantime.
+            if (!interpreter.failedTasks.remove(task)) continue;
+            if (task.failure instanceof RuntimeError) {
+                interpreter.errors.runtimeError((RuntimeError)task.failure);
+            } else {
+                interpreter.errors.runtimeError("Task failed: " + task.failure);
+            }
+        }
+    }
+
+    static LoxTask of(Object value) {
+        if (value instanceof LoxTask) return (LoxTask)value;
+        throw new NativeError("Expected a task.");
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            // Virtual threads make thousands of blocked tasks cheap, but need Java 21.
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "lox-task");
+                // Like virtual threads, tasks must not keep the program alive.
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package jlox;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+// An immutable list, made by the vector native. Changing a vector makes a new one,
+// which shares all but O(log32 n) of its structure with the old one.
+//
+// The elements live in a trie with 32 children per node, plus a tail of up to 32
+// elements which is not in the trie yet, so that pushing is usually a copy of the
+// tail only. Vectors only holding nil, booleans, numbers, strings and other such
+// vectors and dicts are shared between isolates instead of copied, see Isolate.
+class LoxVector implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+
+    static final LoxVector EMPTY = new LoxVector(0, BITS, EMPTY_NODE, new Object[0], true);
+
+    private final int size;
+    // Bits to shift an index by, to find its child in the root.
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+    private final boolean shareable;
+
+    private LoxVector(int size, int shift, Object[] root, Object[] tail, boolean shareable) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        this.shareable = shareable;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isShareable() {
+        return shareable;
+    }
+
+    Object get(int index) {
+        checkIndex(index);
+        return leafFor(index)[index & MASK];
+    }
+
+    LoxVector set(int index, Object value) {
+        checkIndex(index);
+        boolean shareable = this.shareable && Isolate.isShareable(value);
+
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = value;
+            return new LoxVector(size, shift, root, newTail, shareable);
+        }
+        return new LoxVector(size, shift, set(shift, root, index, value), tail, shareable);
+    }
+
+    LoxVector push(Object value) {
+        boolean shareable = this.shareable && Isolate.isShareable(value);
+
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = value;
+            return new LoxVector(size + 1, shift, root, newTail, shareable);
+        }
+
+        // The tail is full, move it into the trie.
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // No room left under the root, grow the trie by a level.
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new LoxVector(size + 1, newShift, newRoot, new Object[] { value }, shareable);
+    }
+
+    LoxVector pop() {
+        if (size == 0) throw new NativeError("Can't pop from an empty vector.");
+        if (size == 1) return EMPTY;
+
+        if (size - tailOffset() > 1) {
+            return new LoxVector(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1), shareable);
+        }
+
+        // The tail would become empty, take the last leaf out of the trie instead.
+        Object[] newTail = leafFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) newRoot = EMPTY_NODE;
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[])newRoot[0];
+            newShift -= BITS;
+        }
+        return new LoxVector(size - 1, newShift, newRoot, newTail, shareable);
+    }
+
+    private int tailOffset() {
+        if (size < WIDTH) return 0;
+        return ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset()) return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[])node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] set(int level, Object[] node, int index, Object value) {
+        Object[] result = node.clone();
+        if (level == 0) {
+            result[index & MASK] = value;
+        } else {
+            int child = (index >>> level) & MASK;
+            result[child] = set(level - BITS, (Object[])node[child], index, value);
+        }
+        return result;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] result = parent.clone();
+        if (level == BITS) {
+            result[child] = leaf;
+        } else if (parent[child] != null) {
+            result[child] = pushTail(level - BITS, (Object[])parent[child], leaf);
+        } else {
+            result[child] = newPath(level - BITS, leaf);
+        }
+        return result;
+    }
+
+    // Returns null when the node becomes empty.
+    private Object[] popTail(int level, Object[] node) {
+        int child = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] newChild = popTail(level - BITS, (Object[])node[child]);
+            if (newChild == null && child == 0) return null;
+            Object[] result = node.clone();
+            result[child] = newChild;
+            return result;
+        }
+        if (child == 0) return null;
+        Object[] result = node.clone();
+        result[child] = null;
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0) return leaf;
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+
+    private void checkIndex(int index) {
+        if (index >= size) throw new NativeError("Vector index " + index + " out of bounds for size " + size + ".");
+    }
+
+    static LoxVector of(Object value) {
+        if (value instanceof LoxVector) return (LoxVector)value;
+        throw new NativeError("Expected a vector.");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append(", ");
+            Object value = get(i);
+            builder.append(value == null ? "nil" : value.toString());
+        }
+        return builder.append("]").toString();
+    }
+}
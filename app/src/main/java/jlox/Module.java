@@ -0,0 +1,28 @@
+package jlox;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// A compiled source file, see ModuleLoader.
+class Module {
+    // Null for source that did not come from a file, like a line typed at the prompt.
+    final Path path;
+    // Set by the ModuleLoader once the module is compiled.
+    List<Stmt> statements;
+
+    Module(Path path) {
+        this.path = path;
+    }
+
+    // What paths in the module are relative to: its own directory, or else the working
+    // directory.
+    Path directory() {
+        return path == null ? Paths.get("").toAbsolutePath() : path.getParent();
+    }
+
+    @Override
+    public String toString() {
+        return path == null ? "<script>" : path.toString();
+    }
+}
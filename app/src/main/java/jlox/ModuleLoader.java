@@ -0,0 +1,156 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Compiles a script together with everything it imports, directly or not.
+//
+// Every module is lexed, parsed and resolved once, on the common ForkJoinPool. A module
+// starts compiling its imports as soon as it has parsed its own top-level statements,
+// so independent modules compile in parallel. Modules are only run later, by the
+// Interpreter, when the import statement is reached.
+//
+// Import paths are relative to the directory of the importing module.
+class ModuleLoader {
+    private final Program program;
+    private final ErrorReporter errors;
+    private final boolean lazyParsing;
+    private final boolean useCache;
+    private final Map<Path, Module> modules = new ConcurrentHashMap<>();
+    private final Queue<ForkJoinTask<?>> pending = new ConcurrentLinkedQueue<>();
+
+    ModuleLoader(Program program, ErrorReporter errors, boolean lazyParsing, boolean useCache) {
+        this.program = program;
+        this.errors = errors;
+        this.lazyParsing = lazyParsing;
+        this.useCache = useCache;
+    }
+
+    // Check hadError of the ErrorReporter before running the result.
+    Module load(Path path) throws IOException {
+        path = path.toAbsolutePath().normalize();
+        String source = read(path);
+
+        Module module = new Module(path);
+        modules.put(path, module);
+        compile(module, source, module.directory());
+        awaitAll();
+        return module;
+    }
+
+    // Source that does not come from a file imports relative to the working directory.
+    Module load(String source) {
+        Module module = new Module(null);
+        compile(module, source, module.directory());
+        awaitAll();
+        return module;
+    }
+
+    // Imports are compiled without anyone waiting for them, so keep waiting until none are left.
+    private void awaitAll() {
+        ForkJoinTask<?> task;
+        while ((task = pending.poll()) != null) {
+            task.join();
+        }
+    }
+
+    private Module module(Path path, Token importedBy, ErrorReporter importerErrors) {
+        return modules.computeIfAbsent(path, p -> {
+            Module module = new Module(p);
+            pending.add(ForkJoinPool.commonPool().submit(() -> compileImport(module, importedBy, importerErrors)));
+            return module;
+        });
+    }
+
+    private void compileImport(Module module, Token importedBy, ErrorReporter importerErrors) {
+        String source;
+        try {
+            source = read(module.path);
+        } catch (IOException e) {
+            importerErrors.error(importedBy, "Could not read module " + module.path + ".");
+            module.statements = new ArrayList<>();
+            return;
+        }
+        compile(module, source, module.directory());
+    }
+
+    private void compile(Module module, String source, Path directory) {
+        ErrorReporter moduleErrors = errors.forFile(module.path == null ? null : module.path.toString());
+        List<Stmt> statements = null;
+
+        Path cachePath = null;
+        String hash = null;
+        if (useCache && module.path != null) {
+            cachePath = AstCache.pathFor(module.path.toString());
+            hash = AstCache.hash(source);
+            AstCache.Entry cached = AstCache.load(cachePath, hash);
+            if (cached != null) {
+                program.locals.putAll(cached.locals);
+                statements = cached.statements;
+            }
+        }
+
+        if (statements == null) {
+            Map<Expr, Integer> resolved = new ConcurrentHashMap<>();
+            statements = compile(source, resolved, moduleErrors);
+            program.locals.putAll(resolved);
+            if (cachePath != null && !moduleErrors.hadError) {
+                AstCache.store(cachePath, hash, statements, resolved);
+            }
+        }
+
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Import) {
+                Stmt.Import stmt = (Stmt.Import)statement;
+                Path path = directory.resolve((String)stmt.path.literal).normalize();
+                program.imports.put(stmt, module(path, stmt.path, moduleErrors));
+            }
+        }
+
+        module.statements = statements;
+    }
+
+    // Lexes, parses and resolves the source, putting the resolved depths in locals.
+    private List<Stmt> compile(String source, Map<Expr, Integer> locals, ErrorReporter errors) {
+        long[] phase = Stats.enabled ? Stats.begin() : null;
+        Lexer lexer = new Lexer(source, errors);
+        List<Token> tokens = lexer.scanTokens();
+        if (Stats.enabled) {
+            Stats.end(Stats.Phase.LEX, phase);
+            Stats.tokens.add(tokens.size());
+            phase = Stats.begin();
+        }
+
+        Parser parser = new Parser(tokens, errors, lazyParsing);
+        List<Stmt> statements = parser.parse();
+
+        // Stop if syntax error, the statements may contain nulls
+        if (errors.hadError) return new ArrayList<>();
+        if (Stats.enabled) {
+            Stats.end(Stats.Phase.PARSE, phase);
+            Stats.countNodes(statements);
+            phase = Stats.begin();
+        }
+
+        Resolver resolver = new Resolver(locals, errors);
+        resolver.resolve(statements);
+        if (Stats.enabled) Stats.end(Stats.Phase.RESOLVE, phase);
+
+        return statements;
+    }
+
+    private static String read(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        return new String(bytes, Charset.defaultCharset());
+    }
+}
@@ -0,0 +1,11 @@
+package jlox;
+
+// Thrown by native functions, which do not know where they were called from.
+// The Interpreter turns it into a RuntimeError at the call.
+class NativeError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    NativeError(String message) {
+        super(message);
+    }
+}
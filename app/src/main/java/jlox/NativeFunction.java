@@ -0,0 +1,66 @@
+package jlox;
+
+import java.util.List;
+
+// A function implemented in Java, like clock.
+class NativeFunction implements LoxCallable {
+    interface Body {
+        Object call(Interpreter interpreter, List<Object> arguments);
+    }
+
+    final String name;
+    private final int arity;
+    private final Body body;
+
+    NativeFunction(String name, int arity, Body body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return body.call(interpreter, arguments);
+    }
+
+    // Argument checks for native functions.
+
+    static double number(Object value) {
+        if (value instanceof Double) return (double)value;
+        throw new NativeError("Expected a number.");
+    }
+
+    static int integer(Object value) {
+        double number = number(value);
+        if (number != Math.floor(number) || number < 0 || number > Integer.MAX_VALUE) {
+            throw new NativeError("Expected a non-negative whole number.");
+        }
+        return (int)number;
+    }
+
+    // For sizes and indices of arrays, which can go past the int range.
+    static long index(Object value) {
+        double number = number(value);
+        if (number != Math.floor(number) || number < 0 || number > (double)(1L << 53)) {
+            throw new NativeError("Expected a non-negative whole number.");
+        }
+        return (long)number;
+    }
+
+    static LoxCallable function(Object value, int arity) {
+        if (value instanceof LoxCallable && ((LoxCallable)value).arity() == arity) {
+            return (LoxCallable)value;
+        }
+        throw new NativeError("Expected a function taking " + arity + (arity == 1 ? " argument." : " arguments."));
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
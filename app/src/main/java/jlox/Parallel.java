@@ -0,0 +1,151 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// The parallel_map, parallel_reduce and parallel_for natives. They split a list or an
+// array into chunks, and call a Lox function for every element on the common ForkJoinPool.
+//
+// Every chunk runs in its own forked Interpreter (see Interpreter.fork), so the functions
+// can read globals and their closures, but should not assign shared variables, see LoxTask.
+class Parallel {
+    // Aim for a few chunks per core, so that uneven chunks even out.
+    private static final int CHUNKS_PER_CORE = 4;
+
+    static Object map(Interpreter interpreter, Object collection, Object function) {
+        LoxCallable callable = NativeFunction.function(function, 1);
+        long size = size(collection);
+
+        if (collection instanceof LoxArray) {
+            LoxArray source = (LoxArray)collection;
+            LoxArray result = new LoxArray(size);
+            forEach(interpreter, size, (forked, i) ->
+                result.set(i, NativeFunction.number(callable.call(forked, Arrays.asList(source.get(i)))))
+            );
+            return result;
+        }
+
+        LoxList source = (LoxList)collection;
+        Object[] results = new Object[(int)size];
+        forEach(interpreter, size, (forked, i) ->
+            results[(int)i] = callable.call(forked, Arrays.asList(source.get((int)i)))
+        );
+        LoxList result = new LoxList(results.length);
+        for (Object value : results) result.add(value);
+        return result;
+    }
+
+    static void forEach(Interpreter interpreter, Object collection, Object function) {
+        LoxCallable callable = NativeFunction.function(function, 1);
+        forEach(interpreter, size(collection), (forked, i) ->
+            callable.call(forked, Arrays.asList(element(collection, i)))
+        );
+    }
+
+    // The function must be associative, as chunks are reduced separately and then combined.
+    static Object reduce(Interpreter interpreter, Object collection, Object function, Object initial) {
+        LoxCallable callable = NativeFunction.function(function, 2);
+        long size = size(collection);
+        if (size == 0) return initial;
+
+        Object reduced = ForkJoinPool.commonPool().invoke(new Reduce(interpreter, collection, callable, 0, size, threshold(size)));
+        return callable.call(interpreter, Arrays.asList(initial, reduced));
+    }
+
+    private interface Body {
+        void run(Interpreter forked, long index);
+    }
+
+    private static void forEach(Interpreter interpreter, long size, Body body) {
+        if (size == 0) return;
+        ForkJoinPool.commonPool().invoke(new ForEach(interpreter, body, 0, size, threshold(size)));
+    }
+
+    private static class ForEach extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final Body body;
+        private final long from;
+        private final long to;
+        private final long threshold;
+
+        ForEach(Interpreter interpreter, Body body, long from, long to, long threshold) {
+            this.interpreter = interpreter;
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                Interpreter forked = interpreter.fork();
+                for (long i = from; i < to; i++) body.run(forked, i);
+                return;
+            }
+            long middle = from + (to - from) / 2;
+            invokeAll(
+                new ForEach(interpreter, body, from, middle, threshold),
+                new ForEach(interpreter, body, middle, to, threshold)
+            );
+        }
+    }
+
+    private static class Reduce extends RecursiveTask<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final Object collection;
+        private final LoxCallable function;
+        private final long from;
+        private final long to;
+        private final long threshold;
+
+        Reduce(Interpreter interpreter, Object collection, LoxCallable function, long from, long to, long threshold) {
+            this.interpreter = interpreter;
+            this.collection = collection;
+            this.function = function;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Object compute() {
+            Interpreter forked = interpreter.fork();
+            if (to - from <= threshold) {
+                Object accumulator = element(collection, from);
+                for (long i = from + 1; i < to; i++) {
+                    accumulator = function.call(forked, Arrays.asList(accumulator, element(collection, i)));
+                }
+                return accumulator;
+            }
+            long middle = from + (to - from) / 2;
+            Reduce left = new Reduce(interpreter, collection, function, from, middle, threshold);
+            Reduce right = new Reduce(interpreter, collection, function, middle, to, threshold);
+            right.fork();
+            Object leftValue = left.compute();
+            return function.call(forked, Arrays.asList(leftValue, right.join()));
+        }
+    }
+
+    private static long threshold(long size) {
+        long chunks = (long)ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_CORE;
+        return Math.max(1, size / chunks);
+    }
+
+    private static long size(Object collection) {
+        if (collection instanceof LoxList) return ((LoxList)collection).size();
+        if (collection instanceof LoxArray) return ((LoxArray)collection).size();
+        throw new NativeError("Expected a list or an array.");
+    }
+
+    private static Object element(Object collection, long index) {
+        if (collection instanceof LoxList) return ((LoxList)collection).get((int)index);
+        return ((LoxArray)collection).get(index);
+    }
+}
@@ -8,10 +8,12 @@ import static jlox.TokenType.*;
 
 /**************************************************************
 * program       → declaration* EOF ;
-* declaration   → | varDecl
+* declaration   → | importDecl
+*                 | varDecl
 *                 | classDecl
 *                 | funDecl
 *                 | statement ;
+* importDecl    → "import" STRING ";" ;
 * varDecl       → "var" IDENTIFIER ( "=" expression )? ";" ;
 * classDecl     → "class" IDENTIFIER ( "<" IDENTIFIER )? "{" methodDecl* "}" ;
 * methodDecl    → IDENTIFIER funParams ;
@@ -23,6 +25,7 @@ import static jlox.TokenType.*;
 *                 | printStmt
 *                 | returnStmt
 *                 | whileStmt
+*                 | yieldStmt
 *                 | forStmt
 *                 | block ;
 * exprStmt      → expression ";" ;
@@ -30,6 +33,7 @@ import static jlox.TokenType.*;
 * printStmt     → "print" expression ";" ;
 * returnStmt    → "return" expression? ";" ;
 * whileStmt     → "while" "(" expression ")" statement ;
+* yieldStmt     → "yield" expression ";" ;
 * forStmt       → "for" "(" ( varDecl | exprStmt | ";" ) expression? ";" expression? ")" statement ;
 * block         → "{" declaration* "}" ;
 * expression    → assignment ;
@@ -53,13 +57,29 @@ import static jlox.TokenType.*;
 ***************************************************************/
 
 class Parser {
-    private static class ParseError extends RuntimeException {}
+    private static class ParseError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
 
     private final List<Token> tokens;
+    private final ErrorReporter errors;
+    // In lazy mode function bodies are only checked for syntax errors, and kept as
+    // tokens, see FunctionBody.
+    private final boolean lazy;
+    // Set while checking a lazy body, whose nested bodies are part of the check.
+    private boolean checking = false;
     private int current = 0;
+    // Whether the function body being parsed has a yield, which makes it a generator.
+    private boolean yielded = false;
+
+    Parser(List<Token> tokens, ErrorReporter errors) {
+        this(tokens, errors, false);
+    }
 
-    Parser(List<Token> tokens) {
+    Parser(List<Token> tokens, ErrorReporter errors, boolean lazy) {
         this.tokens = tokens;
+        this.errors = errors;
+        this.lazy = lazy;
     }
 
     List<Stmt> parse() {
@@ -71,8 +91,24 @@ class Parser {
         return statements;
     }
 
+    // Parses the tokens of a deferred function body, see functionBody.
+    // Returns null if the body is broken beyond recovery.
+    List<Stmt> parseBody() {
+        try {
+            return block();
+        } catch (ParseError error) {
+            return null;
+        }
+    }
+
+    // Whether the body parsed by parseBody yields.
+    boolean yielded() {
+        return yielded;
+    }
+
     private Stmt declaration() {
         try {
+            if (match(IMPORT)) return importDeclaration();
             if (match(VAR)) return varDeclaration();
             if (match(CLASS)) return classDeclaration();
             if (check(FUN) && check2(IDENTIFIER)) {
@@ -108,6 +144,13 @@ class Parser {
         return new Stmt.Class(name, superclass, methods);
     }
 
+    private Stmt importDeclaration() {
+        Token keyword = previous();
+        Token path = consume(STRING, "Expected module path after 'import'.");
+        consume(SEMICOLON, "Expected ';' after module path.");
+        return new Stmt.Import(keyword, path);
+    }
+
     private Stmt varDeclaration() {
         Token name = consume(IDENTIFIER, "Expected variable name.");
         Expr initializer = null;
@@ -125,6 +168,7 @@ class Parser {
         if (match(LEFT_BRACE)) return new Stmt.Block(block());
         if (match(IF        )) return ifStatement();
         if (match(WHILE     )) return whileStatement();
+        if (match(YIELD     )) return yieldStatement();
         if (match(FOR       )) return forStatement();
         return expressionStatement();
     }
@@ -146,6 +190,14 @@ class Parser {
         return new Stmt.Return(keyword, value);
     }
 
+    private Stmt yieldStatement() {
+        Token keyword = previous();
+        Expr value = expression();
+        consume(SEMICOLON, "Expected ';' after yield value.");
+        yielded = true;
+        return new Stmt.Yield(keyword, value);
+    }
+
     private Stmt expressionStatement() {
         Expr expr = expression();
         consume(SEMICOLON, "Expected ';' after expression.");
@@ -237,7 +289,7 @@ class Parser {
         }
         consume(RIGHT_PAREN, "Expected ')' after parameters.");
         consume(LEFT_BRACE, "Expected '{' before " + kind + " body.");
-        List<Stmt> body = block();
+        FunctionBody body = functionBody();
         return new Stmt.Function(name, parameters, body);
     }
 
@@ -252,6 +304,32 @@ class Parser {
         return statements;
     }
 
+    // Parses the body of a function or lambda, after the opening brace.
+    private FunctionBody functionBody() {
+        int line = previous().line;
+        boolean enclosing = yielded;
+        yielded = false;
+        if (!lazy || checking) {
+            List<Stmt> statements = block();
+            FunctionBody body = new FunctionBody(statements, line, yielded);
+            yielded = enclosing;
+            return body;
+        }
+
+        // Parse the body only to report its syntax errors now, like eager mode does, and
+        // drop the statements. It is parsed again by parseBody when first called, so we
+        // keep everything up to and including the closing brace, like block expects.
+        int start = current;
+        checking = true;
+        block();
+        checking = false;
+        yielded = enclosing;
+
+        List<Token> body = new ArrayList<>(tokens.subList(start, current));
+        body.add(new Token(EOF, "", null, previous().line));
+        return FunctionBody.deferred(body, line, errors.file);
+    }
+
 	private Expr expression() {
         return assignment();
 	}
@@ -440,7 +518,7 @@ class Parser {
             }
             consume(RIGHT_PAREN, "Expected ')' after parameters.");
             consume(LEFT_BRACE, "Expected '{' before lambda body.");
-            List<Stmt> body = block();
+            FunctionBody body = functionBody();
             return new Expr.Lambda(parameters, body);
         }
 
@@ -497,7 +575,7 @@ class Parser {
     }
 
     private ParseError error(Token token, String message) {
-        App.error(token, message);
+        errors.error(token, message);
         return new ParseError();
     }
 
@@ -509,12 +587,14 @@ class Parser {
             switch (peek().type) {
                 case CLASS:
                 case FUN:
+                case IMPORT:
                 case VAR:
                 case FOR:
                 case IF:
                 case WHILE:
                 case PRINT:
                 case RETURN:
+                case YIELD:
                     return;
             }
 
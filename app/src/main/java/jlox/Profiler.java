@@ -0,0 +1,131 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// jlox --profile: samples the Lox call stack of every running thread, and writes how
+// often each stack was seen in the collapsed format flame graph tools read, one line
+// per stack: "thread;outer:line;inner:line count". Frames are functions with the line
+// they are declared on, not the line of the call, so calls of a function from different
+// places share a frame. Use --hot-lines to tell the call sites apart.
+//
+// Lox calls are not visible to the JVM, so while enabled every LoxFunction call pushes
+// a frame on a stack of its thread. Only threads that are running (not waiting on a
+// channel, a task or a generator) are sampled.
+class Profiler {
+    static boolean enabled = false;
+
+    private static final Map<Thread, CallStack> stacks = new ConcurrentHashMap<>();
+    private static final ThreadLocal<CallStack> current = ThreadLocal.withInitial(() -> {
+        CallStack stack = new CallStack();
+        stacks.put(Thread.currentThread(), stack);
+        return stack;
+    });
+
+    private final long intervalMillis;
+    private final Map<String, Long> samples = new HashMap<>();
+    private Thread sampler;
+    private volatile boolean running = false;
+
+    Profiler(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    static void enter(String frame) {
+        current.get().push(frame);
+    }
+
+    static void exit() {
+        current.get().pop();
+    }
+
+    void start() {
+        // Sample the top-level code of this thread before its first call too.
+        current.get();
+        enabled = true;
+        running = true;
+        sampler = new Thread(this::sample, "lox-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    // Stops sampling and writes the samples taken so far.
+    void stop(Path path) throws IOException {
+        running = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        enabled = false;
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            for (Map.Entry<String, Long> sample : samples.entrySet()) {
+                out.println(sample.getKey() + " " + sample.getValue());
+            }
+        }
+    }
+
+    private void sample() {
+        while (running) {
+            for (Map.Entry<Thread, CallStack> entry : stacks.entrySet()) {
+                Thread thread = entry.getKey();
+                if (!thread.isAlive()) {
+                    stacks.remove(thread);
+                    continue;
+                }
+                if (thread.getState() != Thread.State.RUNNABLE) continue;
+
+                // A thread without frames is running top-level code.
+                StringBuilder stack = new StringBuilder(thread.getName().isEmpty() ? "thread" : thread.getName().replace(' ', '_'));
+                for (String frame : entry.getValue().snapshot()) stack.append(';').append(frame);
+                samples.merge(stack.toString(), 1L, Long::sum);
+            }
+
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Written by its own thread only, and read racily by the sampler, which is fine for
+    // sampling: at worst a sample shows a frame that was just replaced.
+    private static class CallStack {
+        private volatile String[] frames = new String[64];
+        private volatile int depth = 0;
+
+        void push(String frame) {
+            String[] frames = this.frames;
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+                this.frames = frames;
+            }
+            frames[depth] = frame;
+            depth = depth + 1;
+        }
+
+        void pop() {
+            depth = depth - 1;
+        }
+
+        List<String> snapshot() {
+            int depth = this.depth;
+            String[] frames = this.frames;
+            List<String> snapshot = new ArrayList<>(depth);
+            for (int i = 0; i < Math.min(depth, frames.length); i++) {
+                if (frames[i] != null) snapshot.add(frames[i]);
+            }
+            return snapshot;
+        }
+    }
+}
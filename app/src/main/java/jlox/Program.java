@@ -0,0 +1,15 @@
+package jlox;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// What the front end found out about a program, apart from the statements themselves.
+//
+// Only grows while modules are loaded and lazy function bodies are compiled, and is
+// otherwise read only. This lets many Interpreters, each with its own globals and
+// errors, run the same compiled program on different threads at the same time.
+class Program {
+    // How many scopes up each local variable lives, see Resolver.
+    final Map<Expr, Integer> locals = new ConcurrentHashMap<>();
+    final Map<Stmt.Import, Module> imports = new ConcurrentHashMap<>();
+}
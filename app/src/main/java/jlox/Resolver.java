@@ -1,18 +1,50 @@
 package jlox;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
+    // Where the depth of every local variable access is recorded, see Interpreter.
+    private final Map<Expr, Integer> locals;
+    private final ErrorReporter errors;
     private final Stack<Map<String, Boolean>> scopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
+    private boolean currentGenerator = false;
 
-    Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    Resolver(Map<Expr, Integer> locals, ErrorReporter errors) {
+        this.locals = locals;
+        this.errors = errors;
+    }
+
+    // Continues resolving where a deferred FunctionBody was left, see resolveFunction.
+    Resolver(Map<Expr, Integer> locals, ErrorReporter errors, Snapshot snapshot) {
+        this.locals = locals;
+        this.errors = errors;
+        for (Map<String, Boolean> scope : snapshot.scopes) {
+            scopes.push(new HashMap<>(scope));
+        }
+        this.currentFunction = snapshot.function;
+        this.currentClass = snapshot.klass;
+    }
+
+    // What a deferred function body can see: the scopes around it, including its own parameters.
+    static class Snapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Map<String, Boolean>> scopes;
+        private final FunctionType function;
+        private final ClassType klass;
+
+        private Snapshot(List<Map<String, Boolean>> scopes, FunctionType function, ClassType klass) {
+            this.scopes = scopes;
+            this.function = function;
+            this.klass = klass;
+        }
     }
 
     private enum FunctionType {
@@ -54,15 +86,27 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
         if (currentFunction == FunctionType.NONE)
-            App.error(stmt.keyword, "Can't return from top-level code.");
+            errors.error(stmt.keyword, "Can't return from top-level code.");
         if (stmt.value != null) {
             if (currentFunction == FunctionType.INITIALIZER)
-                App.error(stmt.keyword, "Can't return from initializer.");
+                errors.error(stmt.keyword, "Can't return from initializer.");
+            if (currentGenerator)
+                errors.error(stmt.keyword, "Can't return a value from a generator.");
             resolve(stmt.value);
         }
         return null;
     }
 
+    @Override
+    public Void visitYieldStmt(Stmt.Yield stmt) {
+        if (currentFunction == FunctionType.NONE)
+            errors.error(stmt.keyword, "Can't yield from top-level code.");
+        if (currentFunction == FunctionType.INITIALIZER)
+            errors.error(stmt.keyword, "Can't yield from initializer.");
+        resolve(stmt.value);
+        return null;
+    }
+
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
         resolve(stmt.condition);
@@ -97,7 +141,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         if (stmt.superclass != null &&
             stmt.name.lexeme.equals(stmt.superclass.name.lexeme)
         ){
-            App.error(stmt.superclass.name, "A class cannot inherit itself!");
+            errors.error(stmt.superclass.name, "A class cannot inherit itself!");
         }
 
         if (stmt.superclass != null) {
@@ -129,6 +173,14 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        // The ModuleLoader only looks for imports among the top-level statements.
+        if (!scopes.isEmpty())
+            errors.error(stmt.keyword, "Can only import at top level.");
+        return null;
+    }
+
     @Override
     public Void visitTernaryExpr(Expr.Ternary expr) {
         resolve(expr.condition);
@@ -148,7 +200,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         if (!scopes.isEmpty() &&
             scopes.peek().get(expr.name.lexeme) == Boolean.FALSE
         ){
-            App.error(expr.name, "Can't read local variable in it's own initializer");
+            errors.error(expr.name, "Can't read local variable in it's own initializer");
         }
 
         resolveLocal(expr, expr.name);
@@ -218,7 +270,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitThisExpr(Expr.This expr) {
         if (currentClass != ClassType.CLASS) {
-            App.error(expr.keyword, "Can't use 'this' outside of class.");
+            errors.error(expr.keyword, "Can't use 'this' outside of class.");
             return null;
         }
         resolveLocal(expr, expr.keyword);
@@ -250,19 +302,36 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         expr.accept(this);
     }
 
-    private void resolveFunction(List<Token> params, List<Stmt> body, FunctionType type) {
+    void resolveBody(List<Stmt> body, boolean generator) {
+        currentGenerator = generator;
+        resolve(body);
+    }
+
+    private void resolveFunction(List<Token> params, FunctionBody body, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
+        boolean enclosingGenerator = currentGenerator;
         currentFunction = type;
+        currentGenerator = body.isParsed() && body.isGenerator();
 
         beginScope();
         for (Token param : params) {
             declare(param);
             define(param);
         }
-        resolve(body);
+        if (body.isParsed()) {
+            resolve(body.parsed());
+        } else {
+            // Copy the scopes, later declarations must not become visible to the body.
+            List<Map<String, Boolean>> visible = new ArrayList<>();
+            for (Map<String, Boolean> scope : scopes) {
+                visible.add(new HashMap<>(scope));
+            }
+            body.defer(new Snapshot(visible, currentFunction, currentClass));
+        }
         endScope();
 
         currentFunction = enclosingFunction;
+        currentGenerator = enclosingGenerator;
     }
 
     private void beginScope() {
@@ -288,7 +357,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private void resolveLocal(Expr expr, Token name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
             if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
+                locals.put(expr, scopes.size() - 1 - i);
                 return;
             }
         }
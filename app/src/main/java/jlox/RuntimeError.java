@@ -1,10 +1,20 @@
 package jlox;
 
 class RuntimeError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
     final Token token;
 
     RuntimeError(Token token, String message) {
         super(message);
         this.token = token;
+
+        Events.RuntimeErrorEvent event = new Events.RuntimeErrorEvent();
+        if (event.shouldCommit()) {
+            event.message = message;
+            event.line = token.line;
+            event.token = token.lexeme;
+            event.commit();
+        }
     }
 }
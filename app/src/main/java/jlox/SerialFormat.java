@@ -0,0 +1,89 @@
+package jlox;
+
+import java.io.ObjectInputFilter;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// A fingerprint of the serialized shape of classes, for the files AstCache and Snapshot
+// write. Their classes have a fixed serialVersionUID, so the object streams would read
+// a file written before a field was added or removed, with the field left unset. The
+// fingerprint changes with the fields instead, so such files are rejected up front.
+//
+// It covers the serialized fields (names and types) of the given classes and all the
+// classes nested in them. Changes in what the fields mean still need a VERSION bump.
+class SerialFormat {
+    static final long AST = fingerprint(
+        Expr.class, Stmt.class, Token.class, TokenType.class, FunctionBody.class, Resolver.Snapshot.class
+    );
+
+    // The only classes the files may hold: ours, the collections we use and boxed values.
+    // Anyone who can write next to a script can write its .loxc, so without this, running
+    // the script would deserialize whatever classes they picked. Arrays are checked by
+    // their element type.
+    static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(String.join(";",
+        "jlox.*",
+        "java.lang.Object",
+        "java.lang.String",
+        "java.lang.Boolean",
+        "java.lang.Double",
+        "java.lang.Integer",
+        "java.lang.Long",
+        "java.lang.Number",
+        "java.lang.Enum",
+        "java.util.ArrayList",
+        // Arrays.asList, which the Parser uses for the desugared for loop.
+        "java.util.Arrays$ArrayList",
+        "java.util.HashMap",
+        "java.util.Map$Entry",
+        "java.util.concurrent.ConcurrentHashMap",
+        "java.util.concurrent.ConcurrentHashMap$Segment",
+        // The lock of a ConcurrentHashMap$Segment.
+        "java.util.concurrent.locks.ReentrantLock*",
+        "java.util.concurrent.locks.AbstractOwnableSynchronizer",
+        "java.util.concurrent.locks.AbstractQueuedSynchronizer",
+        "!*"
+    ));
+
+    static long fingerprint(Class<?>... roots) {
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> root : roots) collect(root, classes);
+        classes.sort(Comparator.comparing(Class::getName));
+
+        StringBuilder shape = new StringBuilder();
+        for (Class<?> c : classes) {
+            ObjectStreamClass stream = ObjectStreamClass.lookup(c);
+            if (stream == null) continue;
+            shape.append(c.getName()).append('{');
+            for (ObjectStreamField field : stream.getFields()) {
+                shape.append(field.getName()).append(':').append(field.getType().getName()).append(';');
+            }
+            // The constants of enums are written by name.
+            if (c.isEnum()) {
+                for (Object constant : c.getEnumConstants()) shape.append(constant).append(';');
+            }
+            shape.append('}');
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(shape.toString().getBytes(StandardCharsets.UTF_8));
+            long fingerprint = 0;
+            for (int i = 0; i < 8; i++) fingerprint = (fingerprint << 8) | (digest[i] & 0xff);
+            return fingerprint;
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to ship SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void collect(Class<?> c, List<Class<?>> classes) {
+        if (classes.contains(c)) return;
+        classes.add(c);
+        for (Class<?> nested : c.getDeclaredClasses()) collect(nested, classes);
+    }
+}
@@ -0,0 +1,167 @@
+package jlox;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Keeps a JVM (and its JIT) warm, and runs scripts sent by jlox-client on a unix
+// domain socket, each in a fresh Interpreter.
+//
+// The protocol is lines of text, so the client can be a shell script around nc -U,
+// see src/main/dist/bin/jlox-client, and not pay for starting a JVM of its own:
+//   client -> server:  the absolute path of the script in UTF-8, then a newline.
+//                      The server reads the script, and its imports, itself.
+//   server -> client:  "o " and a line the script printed to stdout, "e " and a line
+//                      it printed to stderr, and last "x " and the exit code, each
+//                      followed by a newline. Then the server closes the connection.
+// Output that does not end in a newline gets one, which Lox output always does.
+//
+// Every connection is handled on its own thread, with the output of its script
+// going straight to the connection.
+class Server {
+    // Longer first lines are not a path anyone meant to send.
+    private static final int MAX_PATH_BYTES = 64 * 1024;
+
+    private final Path socketPath;
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+
+    Server(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    void serve() throws IOException {
+        // A socket file left behind by a killed server would make bind fail.
+        Files.deleteIfExists(socketPath);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socketPath);
+                } catch (IOException ignored) {}
+            }));
+            System.out.println("Listening on " + socketPath);
+
+            while (true) {
+                SocketChannel client = server.accept();
+                workers.execute(() -> {
+                    try (client) {
+                        handle(client);
+                    } catch (IOException e) {
+                        // The client went away, that should not take the server down with it.
+                        System.err.println("Lost client: " + e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    private void handle(SocketChannel client) throws IOException {
+        String line = readLine(Channels.newInputStream(client));
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(client));
+
+        LineOutputStream stdoutLines = new LineOutputStream(out, 'o');
+        LineOutputStream stderrLines = new LineOutputStream(out, 'e');
+        PrintStream stdout = new PrintStream(stdoutLines, true);
+        PrintStream stderr = new PrintStream(stderrLines, true);
+        int exitCode;
+        if (line == null) {
+            stderr.println("Expected the path of a script.");
+            exitCode = 64;
+        } else if (!Paths.get(line).isAbsolute()) {
+            stderr.println("Script path " + line + " is not absolute.");
+            exitCode = 64;
+        } else {
+            try {
+                exitCode = App.runScript(Paths.get(line), stdout, stderr);
+            } catch (RuntimeException | StackOverflowError e) {
+                // Whatever a script does, the server must survive it.
+                stderr.println("Internal error: " + e);
+                exitCode = 70;
+            }
+        }
+        stdoutLines.close();
+        stderrLines.close();
+
+        synchronized (out) {
+            out.write(("x " + exitCode + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    // The first line the client sent, without the newline, or null if there is none.
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1 || line.size() >= MAX_PATH_BYTES) return null;
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    // Writes every line written to it as a line of the given kind, see the protocol above.
+    private static class LineOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte kind;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineOutputStream(OutputStream out, char kind) {
+            this.out = out;
+            this.kind = (byte)kind;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (b == '\n') {
+                writeLine();
+            } else {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) write(b[i]);
+        }
+
+        // Sends the lines written so far. A partial line waits for its newline.
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        // Sends what is left of the last line, and leaves the connection open.
+        @Override
+        public synchronized void close() throws IOException {
+            if (line.size() > 0) writeLine();
+            flush();
+        }
+
+        private void writeLine() throws IOException {
+            synchronized (out) {
+                out.write(kind);
+                out.write(' ');
+                line.writeTo(out);
+                out.write('\n');
+            }
+            line.reset();
+        }
+    }
+}
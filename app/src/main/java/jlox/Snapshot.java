@@ -0,0 +1,161 @@
+package jlox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Saves the globals of an interpreter (functions, classes with their closures,
+// instances and plain values) after running a prelude, so later runs can restore
+// them instead of running the prelude again.
+//
+// The global environment itself and native functions are not written out. They are
+// replaced by references, which are resolved against the interpreter being restored.
+// This is why a snapshot must be restored into an interpreter before it runs anything.
+//
+// Channels, generators, tasks, sequences and isolates belong to a running program and
+// can't be saved. Neither can globals holding them.
+class Snapshot {
+    private static final int MAGIC = 0x4c4f5853; // "LOXS"
+    // Changes to the fields of the serialized classes are caught by FORMAT. Bump this
+    // for changes it can't see.
+    private static final int VERSION = 5;
+
+    private enum GlobalsRef { INSTANCE }
+
+    // The runtime classes a snapshot can hold, and the AST their functions hold.
+    private static final long FORMAT = SerialFormat.AST ^ SerialFormat.fingerprint(
+        Environment.class, LoxFunction.class, LoxClass.class, LoxInstance.class,
+        LoxList.class, LoxMap.class, LoxArray.class, LoxVector.class, LoxDict.class, Snapshot.class
+    );
+
+    private static class NativeRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String name;
+
+        NativeRef(String name) {
+            this.name = name;
+        }
+    }
+
+    // Fails with a message for the user, leaving any snapshot already at path as it was.
+    static void save(Interpreter interpreter, Path path) throws IOException {
+        Map<String, Object> globals = new HashMap<>(interpreter.globals.values());
+        // Write to a temporary file first, so a failed save never leaves half a snapshot.
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (Output out = new Output(new BufferedOutputStream(Files.newOutputStream(temp)), interpreter)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(FORMAT);
+                out.writeObject(globals);
+                out.writeObject(interpreter.program.locals);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NotSerializableException e) {
+            throw new IOException(unsaveable(interpreter, globals, e), e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Finds the global that could not be written, by writing them one at a time.
+    private static String unsaveable(Interpreter interpreter, Map<String, Object> globals, NotSerializableException e) {
+        for (String name : new TreeMap<>(globals).keySet()) {
+            try (Output out = new Output(OutputStream.nullOutputStream(), interpreter)) {
+                out.writeObject(globals.get(name));
+            } catch (NotSerializableException notSerializable) {
+                return "Can't save global '" + name + "' in a snapshot, it holds a " +
+                    simpleName(notSerializable.getMessage()) + ".";
+            } catch (IOException ignored) {}
+        }
+        return "Can't save a " + simpleName(e.getMessage()) + " in a snapshot.";
+    }
+
+    // The message of a NotSerializableException is the name of the class, like jlox.LoxChannel
+    // for a channel.
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        if (name.startsWith("Lox")) name = name.substring(3);
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    // Fails with a message for the user, before defining any of the globals.
+    @SuppressWarnings("unchecked")
+    static void restore(Interpreter interpreter, Path path) throws IOException {
+        if (!Files.isRegularFile(path)) throw new IOException("No snapshot at " + path + ".");
+        try (Input in = new Input(new BufferedInputStream(Files.newInputStream(path)), interpreter)) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a jlox snapshot: " + path);
+            if (in.readInt() != VERSION || in.readLong() != FORMAT) {
+                throw new IOException("Snapshot made by another jlox version: " + path);
+            }
+
+            Map<String, Object> globals = (Map<String, Object>)in.readObject();
+            Map<Expr, Integer> locals = (Map<Expr, Integer>)in.readObject();
+
+            interpreter.program.locals.putAll(locals);
+            for (Map.Entry<String, Object> global : globals.entrySet()) {
+                interpreter.globals.define(global.getKey(), global.getValue());
+            }
+        } catch (ClassNotFoundException | ClassCastException | ObjectStreamException | EOFException e) {
+            throw new IOException("Broken snapshot: " + path + " (" + e + ")", e);
+        }
+    }
+
+    private static class Output extends ObjectOutputStream {
+        private final Interpreter interpreter;
+
+        Output(OutputStream out, Interpreter interpreter) throws IOException {
+            super(out);
+            this.interpreter = interpreter;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (obj == interpreter.globals) return GlobalsRef.INSTANCE;
+            if (obj instanceof NativeFunction) return new NativeRef(((NativeFunction)obj).name);
+            return obj;
+        }
+    }
+
+    private static class Input extends ObjectInputStream {
+        private final Interpreter interpreter;
+
+        Input(InputStream in, Interpreter interpreter) throws IOException {
+            super(in);
+            this.interpreter = interpreter;
+            enableResolveObject(true);
+            // Snapshots come from files like caches do, see SerialFormat.FILTER.
+            setObjectInputFilter(SerialFormat.FILTER);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj == GlobalsRef.INSTANCE) return interpreter.globals;
+            if (obj instanceof NativeRef) {
+                String name = ((NativeRef)obj).name;
+                Object function = interpreter.globals.values().get(name);
+                if (!(function instanceof NativeFunction)) {
+                    throw new IOException("Snapshot uses unknown native function '" + name + "'.");
+                }
+                return function;
+            }
+            return obj;
+        }
+    }
+}
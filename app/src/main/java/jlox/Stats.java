@@ -0,0 +1,121 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// What jlox --stats reports: time and allocation per phase, and counts of what the
+// front end made and the runtime created.
+//
+// Modules compile in parallel, so the time of a phase is summed over all modules, and
+// can add up to more than the whole run took. CPU time and allocation are counted
+// for the thread doing the work only. Function bodies parsed lazily are part of execute.
+//
+// When disabled, the runtime only pays for reading the enabled flag.
+class Stats {
+    enum Phase { LEX, PARSE, RESOLVE, EXECUTE }
+
+    static boolean enabled = false;
+
+    static final LongAdder tokens = new LongAdder();
+    static final LongAdder nodes = new LongAdder();
+    static final LongAdder environments = new LongAdder();
+    static final LongAdder instances = new LongAdder();
+    static final LongAdder boundMethods = new LongAdder();
+    static final LongAdder calls = new LongAdder();
+    static final LongAdder runtimeErrors = new LongAdder();
+    static final LongAdder scriptsRun = new LongAdder();
+    static final AtomicInteger runningScripts = new AtomicInteger();
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final LongAdder[] wallTimes = adders();
+    private static final LongAdder[] cpuTimes = adders();
+    private static final LongAdder[] allocations = adders();
+
+    // Marks the start of a phase on the current thread, for end.
+    static long[] begin() {
+        return new long[] { System.nanoTime(), cpuTime(), allocated() };
+    }
+
+    static void end(Phase phase, long[] begin) {
+        wallTimes[phase.ordinal()].add(System.nanoTime() - begin[0]);
+        cpuTimes[phase.ordinal()].add(cpuTime() - begin[1]);
+        allocations[phase.ordinal()].add(allocated() - begin[2]);
+    }
+
+    static long wallTime(Phase phase) {
+        return wallTimes[phase.ordinal()].sum();
+    }
+
+    // Runs a compiled script as the execute phase.
+    static void execute(Interpreter interpreter, Module module) {
+        if (!enabled) {
+            interpreter.interpret(module);
+            return;
+        }
+
+        runningScripts.incrementAndGet();
+        long[] phase = begin();
+        try {
+            interpreter.interpret(module);
+        } finally {
+            end(Phase.EXECUTE, phase);
+            runningScripts.decrementAndGet();
+            scriptsRun.increment();
+        }
+    }
+
+    static void countNodes(List<Stmt> statements) {
+        NodeCounter counter = new NodeCounter();
+        counter.walk(statements);
+        nodes.add(counter.count);
+    }
+
+    static void report(PrintStream out) {
+        out.printf("%-16s %10s %10s %12s%n", "phase", "wall ms", "cpu ms", "allocated");
+        for (Phase phase : Phase.values()) {
+            int i = phase.ordinal();
+            out.printf("%-16s %10.3f %10.3f %12s%n",
+                phase.name().toLowerCase(),
+                wallTimes[i].sum() / 1e6,
+                cpuTimes[i].sum() / 1e6,
+                Bench.bytes(allocations[i].sum()));
+        }
+        out.println();
+        out.printf("%-16s %10d%n", "tokens", tokens.sum());
+        out.printf("%-16s %10d%n", "ast nodes", nodes.sum());
+        out.printf("%-16s %10d%n", "environments", environments.sum());
+        out.printf("%-16s %10d%n", "instances", instances.sum());
+        out.printf("%-16s %10d%n", "bound methods", boundMethods.sum());
+        out.printf("%-16s %10d%n", "function calls", calls.sum());
+        out.printf("%-16s %10d%n", "runtime errors", runtimeErrors.sum());
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[Phase.values().length];
+        for (int i = 0; i < adders.length; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    // Bytes allocated by the current thread so far.
+    static long allocated() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+        return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static class NodeCounter extends AstWalker {
+        long count = 0;
+
+        @Override
+        protected void enter(Object node) {
+            count++;
+        }
+    }
+}
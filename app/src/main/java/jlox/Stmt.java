@@ -1,9 +1,12 @@
 /* File generated by jlox.tool.GenerateAst */
 package jlox;
 
+import java.io.Serializable;
 import java.util.List;
 
-abstract class Stmt {
+abstract class Stmt implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     interface Visitor<R> {
         R visitExpressionStmt(Expression stmt);
         R visitPrintStmt(Print stmt);
@@ -14,9 +17,13 @@ abstract class Stmt {
         R visitWhileStmt(While stmt);
         R visitFunctionStmt(Function stmt);
         R visitClassStmt(Class stmt);
+        R visitImportStmt(Import stmt);
+        R visitYieldStmt(Yield stmt);
     }
 
     static class Expression extends Stmt {
+        private static final long serialVersionUID = 1L;
+
         Expression(Expr expression) {
             this.expression = expression;
         }
@@ -29,6 +36,8 @@ abstract class Stmt {
         final Expr expression;
     }
     static class Print extends Stmt {
+        private static final long serialVersionUID = 1L;
+
         Print(Expr expression) {
             this.expression = expression;
         }
@@ -41,6 +50,8 @@ abstract class Stmt {
         final Expr expression;
     }
     static class Return extends Stmt {
+        private static final long serialVersionUID = 1L;
+
         Return(Token keyword, Expr value) {
             this.keyword = keyword;
             this.value = value;
@@ -55,6 +66,8 @@ abstract class Stmt {
         final Expr value;
     }
     static class Var extends Stmt {
+        private static final long serialVersionUID = 1L;
+
         Var(Token name, Expr initializer) {
             this.name = name;
             this.initializer = initializer;
@@ -69,6 +82,8 @@ abstract class Stmt {
         final Expr initializer;
     }
     static class Block extends Stmt {
+        private static final long serialVersionUID = 1L;
+
         Block(List<Stmt> statements) {
             this.statements = statements;
         }
@@ -81,6 +96,8 @@ abstract class Stmt {
         final List<Stmt> statements;
     }
     static class If extends Stmt {
+        private static final long serialVersionUID = 1L;
+
         If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
             this.condition = condition;
             this.thenBranch = thenBranch;
@@ -97,6 +114,8 @@ abstract class Stmt {
         final Stmt elseBranch;
     }
     static class While extends Stmt {
+        private static final long serialVersionUID = 1L;
+
         While(Expr condition, Stmt body) {
             this.condition = condition;
             this.body = body;
@@ -111,7 +130,9 @@ abstract class Stmt {
         final Stmt body;
     }
     static class Function extends Stmt {
-        Function(Token name, List<Token> params, List<Stmt> body) {
+        private static final long serialVersionUID = 1L;
+
+        Function(Token name, List<Token> params, FunctionBody body) {
             this.name = name;
             this.params = params;
             this.body = body;
@@ -124,9 +145,11 @@ abstract class Stmt {
 
         final Token name;
         final List<Token> params;
-        final List<Stmt> body;
+        final FunctionBody body;
     }
     static class Class extends Stmt {
+        private static final long serialVersionUID = 1L;
+
         Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
             this.name = name;
             this.superclass = superclass;
@@ -142,6 +165,38 @@ abstract class Stmt {
         final Expr.Variable superclass;
         final List<Stmt.Function> methods;
     }
+    static class Import extends Stmt {
+        private static final long serialVersionUID = 1L;
+
+        Import(Token keyword, Token path) {
+            this.keyword = keyword;
+            this.path = path;
+        }
+        
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitImportStmt(this);
+        }
+
+        final Token keyword;
+        final Token path;
+    }
+    static class Yield extends Stmt {
+        private static final long serialVersionUID = 1L;
+
+        Yield(Token keyword, Expr value) {
+            this.keyword = keyword;
+            this.value = value;
+        }
+        
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitYieldStmt(this);
+        }
+
+        final Token keyword;
+        final Expr value;
+    }
 
     abstract <R> R accept(Visitor<R> visitor);
 }
@@ -0,0 +1,77 @@
+package jlox;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.List;
+
+// The natives for measuring Lox code from Lox: bench and gc_stats. Their results are
+// maps from names to numbers, times in nanoseconds and sizes in bytes.
+class Timing {
+    // Up to this many times are kept, however many iterations are asked for.
+    private static final int SAMPLES = 100_000;
+
+    // bench(fn, iterations): calls fn, which takes no arguments, iterations times to warm
+    // up, so the JIT compiles the interpreter paths it takes, then iterations times more
+    // timing every call. Past SAMPLES iterations, the calls are timed in batches of
+    // about the same size instead, and the statistics are of the mean call in a batch.
+    static LoxMap bench(Interpreter interpreter, LoxCallable function, int iterations) {
+        if (iterations < 1) throw new NativeError("Expected at least one iteration.");
+        List<Object> arguments = List.of();
+        for (int i = 0; i < iterations; i++) function.call(interpreter, arguments);
+
+        int samples = Math.min(iterations, SAMPLES);
+        long[] times = new long[samples];
+        long allocatedBefore = Stats.allocated();
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            int calls = iterations / samples + (i < iterations % samples ? 1 : 0);
+            long batchStart = System.nanoTime();
+            for (int call = 0; call < calls; call++) function.call(interpreter, arguments);
+            times[i] = (System.nanoTime() - batchStart) / calls;
+        }
+        long total = System.nanoTime() - start;
+        long allocated = Stats.allocated() - allocatedBefore;
+
+        Arrays.sort(times);
+        double mean = Arrays.stream(times).average().orElse(0);
+        double variance = 0;
+        for (long time : times) variance += (time - mean) * (time - mean);
+
+        LoxMap stats = new LoxMap();
+        stats.put("iterations", (double)iterations);
+        stats.put("mean", mean);
+        stats.put("stddev", Math.sqrt(variance / samples));
+        stats.put("min", (double)times[0]);
+        stats.put("p50", (double)Bench.percentile(times, 50));
+        stats.put("p90", (double)Bench.percentile(times, 90));
+        stats.put("p99", (double)Bench.percentile(times, 99));
+        stats.put("max", (double)times[samples - 1]);
+        stats.put("ops_per_sec", total == 0 ? 0.0 : iterations * 1e9 / total);
+        // Allocated by this thread only, see Stats.
+        stats.put("allocated_per_op", (double)allocated / iterations);
+        return stats;
+    }
+
+    // gc_stats(): what the JVM has collected and allocated so far.
+    static LoxMap gcStats() {
+        long collections = 0;
+        long collectionTime = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // Either is -1 if the collector can't tell.
+            collections += Math.max(collector.getCollectionCount(), 0);
+            collectionTime += Math.max(collector.getCollectionTime(), 0);
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        LoxMap stats = new LoxMap();
+        stats.put("collections", (double)collections);
+        stats.put("collection_time", collectionTime * 1e6);
+        stats.put("heap_used", (double)heap.getUsed());
+        stats.put("heap_committed", (double)heap.getCommitted());
+        stats.put("heap_max", (double)heap.getMax());
+        stats.put("allocated", (double)Stats.allocated());
+        return stats;
+    }
+}
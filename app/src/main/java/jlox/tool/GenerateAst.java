@@ -25,7 +25,7 @@ public class GenerateAst {
             "This       : Token keyword",
             "Variable   : Token name",
             "Assign     : Token name, Expr value",
-            "Lambda     : List<Token> params, List<Stmt> body",
+            "Lambda     : List<Token> params, FunctionBody body",
             "Super      : Token keyword, Token method"
         ));
         defineAst(outputDir, "Stmt", Arrays.asList(
@@ -36,8 +36,10 @@ public class GenerateAst {
             "Block      : List<Stmt> statements",
             "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
             "While      : Expr condition, Stmt body",
-            "Function   : Token name, List<Token> params, List<Stmt> body",
-            "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods"
+            "Function   : Token name, List<Token> params, FunctionBody body",
+            "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods",
+            "Import     : Token keyword, Token path",
+            "Yield      : Token keyword, Expr value"
         ));
     }
 
@@ -49,9 +51,11 @@ public class GenerateAst {
             "/* File generated by jlox.tool.GenerateAst */\n"+
             "package jlox;\n"+
             "\n"+
+            "import java.io.Serializable;\n"+
             "import java.util.List;\n"+
             "\n"+
-            "abstract class "+baseName+" {"
+            "abstract class "+baseName+" implements Serializable {\n"+
+            "    private static final long serialVersionUID = 1L;\n"
         );
 
         defineVisitor(writer, baseName, types);
@@ -82,6 +86,7 @@ public class GenerateAst {
 
     private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
         writer.println("    static class " + className + " extends " + baseName + " {");
+        writer.println("        private static final long serialVersionUID = 1L;\n");
         writer.println("        " + className + "(" + fieldList + ") {"); // Constructor
 
         String[] fields = fieldList.split(", ");
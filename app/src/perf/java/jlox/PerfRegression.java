@@ -0,0 +1,239 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+// Runs every script in a directory of workloads like jlox bench does, and compares the
+// bytes allocated per run and the runs per second against the baselines stored in
+// src/perf/baselines.properties. Exits with 1 if allocation grew by more than the
+// allocation threshold, so ./gradlew perfTest fails, see app/build.gradle.kts.
+//
+// Throughput depends on the machine, so it is only reported, unless a threshold for it
+// is given, after updating the baselines (-PperfUpdate) on the machine that checks them.
+// Allocation hardly depends on the machine, so its baselines are worth keeping anywhere.
+public class PerfRegression {
+    private static final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final int warmup;
+    private final int rounds;
+    private final int iterations;
+
+    private PerfRegression(int warmup, int rounds, int iterations) {
+        this.warmup = warmup;
+        this.rounds = rounds;
+        this.iterations = iterations;
+    }
+
+    // What a workload measured, or the baseline of one.
+    private static class Result {
+        final double runsPerSecond;
+        final double allocatedPerRun;
+
+        Result(double runsPerSecond, double allocatedPerRun) {
+            this.runsPerSecond = runsPerSecond;
+            this.allocatedPerRun = allocatedPerRun;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path workloads = null;
+        Path baselines = null;
+        // Not checked when null.
+        Double threshold = null;
+        double allocationThreshold = 5;
+        boolean update = false;
+        int warmup = 20;
+        int rounds = 5;
+        int iterations = 10;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--workloads") && i + 1 < args.length) {
+                    workloads = Paths.get(args[++i]);
+                } else if (arg.equals("--baselines") && i + 1 < args.length) {
+                    baselines = Paths.get(args[++i]);
+                } else if (arg.equals("--threshold") && i + 1 < args.length) {
+                    threshold = Double.parseDouble(args[++i]);
+                } else if (arg.equals("--allocation-threshold") && i + 1 < args.length) {
+                    allocationThreshold = Double.parseDouble(args[++i]);
+                } else if (arg.equals("--warmup") && i + 1 < args.length) {
+                    warmup = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--rounds") && i + 1 < args.length) {
+                    rounds = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--iterations") && i + 1 < args.length) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--update")) {
+                    update = true;
+                } else {
+                    usage();
+                }
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        }
+        if (workloads == null || baselines == null) usage();
+        if ((threshold != null && threshold < 0) || allocationThreshold < 0) usage();
+        if (warmup < 0 || rounds < 1 || iterations < 1) usage();
+
+        PerfRegression perf = new PerfRegression(warmup, rounds, iterations);
+        List<Path> scripts = scripts(workloads);
+        // Warm up on all of them before measuring any, or the first would be measured
+        // while the JIT is still busy with the paths the others take.
+        for (Path script : scripts) perf.warmup(script);
+        List<String> names = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        for (Path script : scripts) {
+            names.add(script.getFileName().toString().replaceFirst("\\.lox$", ""));
+            results.add(perf.measure(script));
+        }
+
+        if (update) {
+            write(baselines, names, results);
+            System.out.println("Wrote " + names.size() + " baselines to " + baselines + ".");
+            return;
+        }
+
+        if (!Files.exists(baselines)) {
+            System.out.println("No baselines in " + baselines + ", run ./gradlew perfTest -PperfUpdate.");
+            System.exit(1);
+        }
+        Properties stored = new Properties();
+        try (Reader reader = Files.newBufferedReader(baselines)) {
+            stored.load(reader);
+        }
+
+        System.out.printf("%-12s %12s %12s %8s %12s %12s %8s%n",
+            "workload", "runs/s", "baseline", "change", "alloc/run", "baseline", "change");
+        int regressions = 0;
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            Result result = results.get(i);
+            String runsPerSecond = stored.getProperty(name + ".runsPerSecond");
+            String allocatedPerRun = stored.getProperty(name + ".allocatedPerRun");
+            if (runsPerSecond == null || allocatedPerRun == null) {
+                System.out.printf("%-12s %12.1f %12s %8s %12s %12s %8s  NO BASELINE%n",
+                    name, result.runsPerSecond, "-", "", Bench.bytes((long)result.allocatedPerRun), "-", "");
+                missing.add(name);
+                continue;
+            }
+
+            Result baseline = new Result(Double.parseDouble(runsPerSecond), Double.parseDouble(allocatedPerRun));
+            // Both as how much worse, in percent: fewer runs, or more allocation.
+            double slower = 100 * (baseline.runsPerSecond - result.runsPerSecond) / baseline.runsPerSecond;
+            double allocating = baseline.allocatedPerRun == 0 ? 0
+                : 100 * (result.allocatedPerRun - baseline.allocatedPerRun) / baseline.allocatedPerRun;
+            boolean regressed = (threshold != null && slower > threshold) || allocating > allocationThreshold;
+            if (regressed) regressions++;
+            System.out.printf("%-12s %12.1f %12.1f %+7.1f%% %12s %12s %+7.1f%%%s%n",
+                name,
+                result.runsPerSecond,
+                baseline.runsPerSecond,
+                -slower,
+                Bench.bytes((long)result.allocatedPerRun),
+                Bench.bytes((long)baseline.allocatedPerRun),
+                allocating,
+                regressed ? "  REGRESSED" : "");
+        }
+
+        if (threshold == null) System.out.println("Throughput is not checked without a threshold (-PperfThreshold).");
+        boolean failed = false;
+        if (!missing.isEmpty()) {
+            System.out.println("No baselines for " + String.join(", ", missing) + ", run ./gradlew perfTest -PperfUpdate.");
+            failed = true;
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " of " + names.size() + " workloads regressed.");
+            failed = true;
+        }
+        if (failed) System.exit(1);
+    }
+
+    private static void usage() {
+        System.out.println("Usage: PerfRegression --workloads directory --baselines file [--update]");
+        System.out.println("                      [--threshold percent] [--allocation-threshold percent]");
+        System.out.println("                      [--warmup runs] [--rounds rounds] [--iterations runs per round]");
+        System.exit(64);
+    }
+
+    private static List<Path> scripts(Path directory) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.lox")) {
+            for (Path entry : entries) scripts.add(entry);
+        }
+        scripts.sort(null);
+        return scripts;
+    }
+
+    private void warmup(Path script) throws IOException {
+        for (int i = 0; i < warmup; i++) run(script);
+    }
+
+    // Runs per second are from the fastest of the medians of several rounds. A GC pause
+    // doesn't move a median, and a busy machine only makes rounds slower, never faster.
+    private Result measure(Path script) throws IOException {
+        double runsPerSecond = 0;
+        long allocated = 0;
+        for (int round = 0; round < rounds; round++) {
+            long[] times = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long allocatedBefore = allocated();
+                long start = System.nanoTime();
+                run(script);
+                times[i] = System.nanoTime() - start;
+                allocated += allocated() - allocatedBefore;
+            }
+            Arrays.sort(times);
+            runsPerSecond = Math.max(runsPerSecond, 1e9 / Bench.percentile(times, 50));
+        }
+        return new Result(runsPerSecond, (double)allocated / (rounds * iterations));
+    }
+
+    // Bytes allocated by all threads so far, as imports compile on the common pool and
+    // tasks run on threads of their own. Threads that ended take their count with them,
+    // which leaves out tasks whose thread exits during a run.
+    private static long allocated() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+        long total = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // -1 for threads that ended in the meantime.
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    // Same as Bench.run with the eager backend, which fails on errors instead.
+    private void run(Path script) throws IOException {
+        Interpreter interpreter = new Interpreter(new Program(), discard, System.err);
+        ErrorReporter errors = interpreter.errors;
+        Module module = new ModuleLoader(interpreter.program, errors, false, false).load(script);
+        if (!errors.hadError) interpreter.interpret(module);
+        if (errors.hadError || errors.hadRuntimeError) throw new IllegalStateException(script + " failed.");
+    }
+
+    private static void write(Path path, List<String> names, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("# Baselines for ./gradlew perfTest, written by ./gradlew perfTest -PperfUpdate.");
+            out.println("# Runs per second are from the machine that wrote them, and are only checked");
+            out.println("# with -PperfThreshold.");
+            for (int i = 0; i < names.size(); i++) {
+                out.printf("%s.runsPerSecond=%.1f%n", names.get(i), results.get(i).runsPerSecond);
+                out.printf("%s.allocatedPerRun=%.0f%n", names.get(i), results.get(i).allocatedPerRun);
+            }
+        }
+    }
+}
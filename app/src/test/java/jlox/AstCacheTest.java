@@ -0,0 +1,153 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AstCacheTest {
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("jlox-cache");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(path);
+        }
+    }
+
+    // Loads and runs the script at path with the cache on, and returns what it printed.
+    private static String run(Path path) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(new Program(), new PrintStream(out, true), System.err);
+        Module module = new ModuleLoader(interpreter.program, interpreter.errors, false, true).load(path);
+        assertFalse(interpreter.errors.hadError);
+        interpreter.interpret(module);
+        assertFalse(interpreter.errors.hadRuntimeError);
+        return out.toString().trim();
+    }
+
+    @Test
+    public void storesAndLoads() throws IOException {
+        Path script = directory.resolve("script.lox");
+        // A closure, so the cached resolver depths must still match the cached nodes.
+        Files.writeString(script,
+            "fun counter() { var n = 0; for (var i = 0; i < 2; i = i + 1) n = n - 1; fun next() { n = n + 1; return n; } return next; }\n" +
+            "var c = counter(); c(); print c();\n");
+        String first = run(script);
+        Path cache = AstCache.pathFor(script.toString());
+        assertTrue(Files.exists(cache));
+
+        String hash = AstCache.hash(Files.readString(script));
+        AstCache.Entry entry = AstCache.load(cache, hash);
+        assertNotNull(entry);
+        assertEquals(4, entry.statements.size());
+        assertFalse(entry.locals.isEmpty());
+        assertEquals(first, run(script));
+    }
+
+    @Test
+    public void changedSourceIsCompiledAgain() throws IOException {
+        Path script = directory.resolve("script.lox");
+        Files.writeString(script, "print \"before\";\n");
+        assertEquals("before", run(script));
+        String oldHash = AstCache.hash(Files.readString(script));
+
+        Files.writeString(script, "print \"after\";\n");
+        assertNull(AstCache.load(AstCache.pathFor(script.toString()), AstCache.hash(Files.readString(script))));
+        assertEquals("after", run(script));
+        // And the cache now holds the new source.
+        Path cache = AstCache.pathFor(script.toString());
+        assertNull(AstCache.load(cache, oldHash));
+        assertNotNull(AstCache.load(cache, AstCache.hash(Files.readString(script))));
+    }
+
+    @Test
+    public void otherVersionIsIgnored() throws IOException {
+        Path cache = directory.resolve("old.lox" + AstCache.EXTENSION);
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(cache))) {
+            out.writeInt(0x4c4f5843);
+            out.writeInt(-1);
+        }
+        assertNull(AstCache.load(cache, "hash"));
+    }
+
+    @Test
+    public void otherFormatIsIgnored() throws IOException {
+        Path script = directory.resolve("script.lox");
+        Files.writeString(script, "print 1;\n");
+        run(script);
+        Path cache = AstCache.pathFor(script.toString());
+
+        // Flip a bit of the fingerprint of the AST classes, which follows the magic and version.
+        byte[] bytes = Files.readAllBytes(cache);
+        int fingerprint = indexOf(bytes, SerialFormat.AST);
+        assertTrue(fingerprint > 0);
+        bytes[fingerprint] ^= 1;
+        Files.write(cache, bytes);
+        assertNull(AstCache.load(cache, AstCache.hash(Files.readString(script))));
+    }
+
+    @Test
+    public void brokenCacheIsIgnored() throws IOException {
+        Path script = directory.resolve("script.lox");
+        Files.writeString(script, "print \"fine\";\n");
+        Files.write(AstCache.pathFor(script.toString()), new byte[] { 1, 2, 3 });
+        assertEquals("fine", run(script));
+    }
+
+    @Test
+    public void classesOutsideTheAllowListAreNotRead() throws IOException {
+        Path script = directory.resolve("script.lox");
+        Files.writeString(script, "print 1;\n");
+        run(script);
+        Path cache = AstCache.pathFor(script.toString());
+
+        // The header of the real cache, followed by objects of a class jlox never writes.
+        int magic;
+        int version;
+        long format;
+        String hash;
+        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(cache))) {
+            magic = in.readInt();
+            version = in.readInt();
+            format = in.readLong();
+            hash = in.readUTF();
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(cache))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeLong(format);
+            out.writeUTF(hash);
+            out.writeObject(new ArrayList<>(List.of(new Random())));
+            out.writeObject(new HashMap<>());
+        }
+        assertNull(AstCache.load(cache, hash));
+    }
+
+    private static int indexOf(byte[] bytes, long value) {
+        for (int i = 0; i + 8 <= bytes.length; i++) {
+            long read = 0;
+            for (int j = 0; j < 8; j++) read = (read << 8) | (bytes[i + j] & 0xff);
+            if (read == value) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,81 @@
+package jlox;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FunctionBodyTest {
+    private static final String PROGRAM = String.join("\n",
+        "fun counter(step) {",
+        "  var count = 0;",
+        "  fun next() {",
+        "    count = count + step;",
+        "    return count;",
+        "  }",
+        "  return next;",
+        "}",
+        "class Shape {",
+        "  init(name) { this.name = name; }",
+        "  describe() { return this.name + \" with \" + to_str(this.sides()); }",
+        "  sides() { return 0; }",
+        "}",
+        "class Square < Shape {",
+        "  sides() { return 4; }",
+        "}",
+        "var next = counter(2);",
+        "next();",
+        "print next();",
+        "var twice = fun (f, x) { return f(f(x)); };",
+        "print twice(fun (x) { return x * 3; }, 1);",
+        "print Square(\"square\").describe();",
+        "fun unused() { print \"never called\"; }"
+    );
+
+    @Test
+    public void lazyAndEagerPrintTheSame() {
+        String eager = new Script(false).run(PROGRAM).out();
+        String lazy = new Script(true).run(PROGRAM).out();
+        assertEquals("4.0\n9.0\nsquare with 4.0\n", eager);
+        assertEquals(eager, lazy);
+    }
+
+    @Test
+    public void syntaxErrorsAreReportedAtLoad() {
+        String source = String.join("\n",
+            "print \"before\";",
+            "fun outer() {",
+            "  fun inner() {",
+            "    var = 1;",
+            "  }",
+            "}",
+            "print \"after\";"
+        );
+        Script eager = new Script(false);
+        eager.load(source);
+        Script lazy = new Script(true);
+        lazy.load(source);
+
+        assertTrue(lazy.interpreter.errors.hadError);
+        assertTrue(lazy.err(), lazy.err().contains("[line 4]"));
+        assertEquals(eager.err(), lazy.err());
+        // Nothing ran, as the error is reported before the module is interpreted.
+        assertEquals("", lazy.out());
+    }
+
+    @Test
+    public void bodiesAreOnlyParsedWhenCalled() {
+        Script script = new Script(true);
+        Module module = script.load(String.join("\n",
+            "fun first() { return 1; }",
+            "fun second() { return 2; }",
+            "print first();"
+        ));
+        FunctionBody first = ((Stmt.Function)module.statements.get(0)).body;
+        FunctionBody second = ((Stmt.Function)module.statements.get(1)).body;
+        assertFalse(first.isParsed());
+
+        script.interpreter.interpret(module);
+        assertEquals("1.0\n", script.out());
+        assertTrue(first.isParsed());
+        assertFalse(second.isParsed());
+    }
+}
@@ -0,0 +1,98 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IsolateTest {
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("jlox-isolates");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(path);
+        }
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.writeString(directory.resolve(name), String.join("\n", lines));
+    }
+
+    // Runs the lines from a file in the temporary directory, which isolate paths are
+    // relative to.
+    private Script run(String... lines) throws IOException {
+        return new Script().run(write("main.lox", lines));
+    }
+
+    @Test
+    public void messagesAreCopied() throws IOException {
+        write("child.lox",
+            "var parent = isolate_parent();",
+            "var values = isolate_receive(parent);",
+            "var sum = 0;",
+            "for (var i = 0; i < list_size(values); i = i + 1) sum = sum + list_get(values, i);",
+            "list_set(values, 0, 100);",
+            "isolate_send(parent, sum);",
+            "isolate_send(parent, values);"
+        );
+        Script script = run(
+            "var values = list();",
+            "for (var i = 1; i <= 4; i = i + 1) list_push(values, i);",
+            "var child = isolate(\"child.lox\");",
+            "isolate_send(child, values);",
+            "print isolate_receive(child);",
+            "print list_get(isolate_receive(child), 0);",
+            "// The isolate changed its own copy only.",
+            "print list_get(values, 0);",
+            "isolate_join(child);",
+            "// Nothing more once it is gone.",
+            "print isolate_receive(child);"
+        );
+        assertEquals("10.0\n100.0\n1.0\nnil\n", script.out());
+        assertFalse(script.err(), script.hadRuntimeError());
+    }
+
+    @Test
+    public void joinFailsWhenTheScriptFailed() throws IOException {
+        write("child.lox", "nil();");
+        Script script = run(
+            "var child = isolate(\"child.lox\");",
+            "isolate_join(child);",
+            "print \"not reached\";"
+        );
+        assertEquals("", script.out());
+        assertTrue(script.hadRuntimeError());
+        // Reported by the isolate itself, then by the join.
+        assertTrue(script.err(), script.err().contains("Can only call functions and classes."));
+        assertTrue(script.err(), script.err().contains("Isolate " + directory.resolve("child.lox") + " failed."));
+    }
+
+    @Test
+    public void joinFailsWhenTheScriptIsMissing() throws IOException {
+        Script script = run("isolate_join(isolate(\"missing.lox\"));");
+        assertTrue(script.hadRuntimeError());
+        assertTrue(script.err(), script.err().contains("Could not read isolate script"));
+    }
+
+    @Test
+    public void onlyDataCanBeSent() throws IOException {
+        write("child.lox", "isolate_receive(isolate_parent());");
+        Script script = run(
+            "var child = isolate(\"child.lox\");",
+            "isolate_send(child, fun () {});"
+        );
+        assertTrue(script.hadRuntimeError());
+        assertTrue(script.err(), script.err().contains("Can only send nil"));
+    }
+}
@@ -0,0 +1,113 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoxArrayTest {
+    private static LoxArray arrayOf(double... values) {
+        LoxArray array = new LoxArray(values.length);
+        for (int i = 0; i < values.length; i++) array.set(i, values[i]);
+        return array;
+    }
+
+    private static void assertSorted(double[] values) {
+        LoxArray array = arrayOf(values);
+        array.sort();
+        double[] expected = values.clone();
+        Arrays.sort(expected);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(array.get(i)));
+        }
+    }
+
+    @Test
+    public void startsAsZeros() {
+        LoxArray array = new LoxArray(10);
+        assertEquals(10, array.size());
+        for (int i = 0; i < 10; i++) assertEquals(0.0, array.get(i), 0);
+    }
+
+    @Test
+    public void outOfBounds() {
+        LoxArray array = new LoxArray(3);
+        try {
+            array.get(3);
+            fail("Expected an error.");
+        } catch (NativeError expected) {}
+        try {
+            array.set(3, 1);
+            fail("Expected an error.");
+        } catch (NativeError expected) {}
+        try {
+            new LoxArray(0).get(0);
+            fail("Expected an error.");
+        } catch (NativeError expected) {}
+    }
+
+    @Test
+    public void copyOutOfBounds() {
+        LoxArray from = new LoxArray(4);
+        LoxArray to = new LoxArray(4);
+        try {
+            LoxArray.copy(from, 2, to, 0, 3);
+            fail("Expected an error.");
+        } catch (NativeError expected) {}
+        try {
+            LoxArray.copy(from, 0, to, 2, 3);
+            fail("Expected an error.");
+        } catch (NativeError expected) {}
+    }
+
+    @Test
+    public void copyOverlapping() {
+        LoxArray array = arrayOf(1, 2, 3, 4, 5);
+        LoxArray.copy(array, 0, array, 1, 4);
+        for (int i = 0; i < 5; i++) assertEquals(i == 0 ? 1 : i, array.get(i), 0);
+    }
+
+    @Test
+    public void fillAndSum() {
+        LoxArray array = new LoxArray(1000);
+        array.fill(0.5);
+        assertEquals(500, array.sum(), 0);
+    }
+
+    @Test
+    public void sortSmallAndEmpty() {
+        assertSorted(new double[0]);
+        assertSorted(new double[] { 1 });
+        assertSorted(new double[] { 3, 1, 2 });
+    }
+
+    @Test
+    public void sortLikeDoubleCompare() {
+        // NaN goes last, and -0 before 0.
+        assertSorted(new double[] { 0.0, Double.NaN, -0.0, Double.NEGATIVE_INFINITY, 1, -1, Double.POSITIVE_INFINITY });
+    }
+
+    @Test
+    public void sortRandomSortedAndReversed() {
+        Random random = new Random(42);
+        double[] values = new double[10_000];
+        for (int i = 0; i < values.length; i++) values[i] = random.nextInt(1000);
+        assertSorted(values);
+
+        double[] ascending = new double[10_000];
+        double[] descending = new double[10_000];
+        for (int i = 0; i < ascending.length; i++) {
+            ascending[i] = i;
+            descending[i] = -i;
+        }
+        assertSorted(ascending);
+        assertSorted(descending);
+    }
+
+    @Test
+    public void sortAllEqual() {
+        double[] values = new double[5000];
+        Arrays.fill(values, 7);
+        assertSorted(values);
+    }
+}
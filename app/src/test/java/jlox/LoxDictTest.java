@@ -0,0 +1,98 @@
+package jlox;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoxDictTest {
+    // These all have the same hashCode, so they end up in one collision node.
+    private static final String[] COLLIDING = { "AaAa", "AaBB", "BBAa", "BBBB" };
+
+    @Test
+    public void putAndGetManyKeys() {
+        LoxDict dict = LoxDict.EMPTY;
+        for (int i = 0; i < 5000; i++) dict = dict.put((double)i, "v" + i);
+        assertEquals(5000, dict.size());
+        for (int i = 0; i < 5000; i++) assertEquals("v" + i, dict.get((double)i));
+        assertFalse(dict.containsKey(5000.0));
+    }
+
+    @Test
+    public void putLeavesTheOldDictUnchanged() {
+        LoxDict before = LoxDict.EMPTY.put("a", 1.0);
+        LoxDict after = before.put("a", 2.0).put("b", 3.0);
+        assertEquals(1, before.size());
+        assertEquals(1.0, before.get("a"));
+        assertFalse(before.containsKey("b"));
+        assertEquals(2, after.size());
+        assertEquals(2.0, after.get("a"));
+    }
+
+    @Test
+    public void collidingKeysAreKeptApart() {
+        for (String key : COLLIDING) assertEquals(COLLIDING[0].hashCode(), key.hashCode());
+
+        LoxDict dict = LoxDict.EMPTY;
+        for (String key : COLLIDING) dict = dict.put(key, key + "!");
+        assertEquals(COLLIDING.length, dict.size());
+        for (String key : COLLIDING) assertEquals(key + "!", dict.get(key));
+
+        // Replacing one in the collision node doesn't add an entry.
+        dict = dict.put("AaBB", "again");
+        assertEquals(COLLIDING.length, dict.size());
+        assertEquals("again", dict.get("AaBB"));
+        assertEquals("BBAa!", dict.get("BBAa"));
+    }
+
+    @Test
+    public void removeFromCollisionNode() {
+        LoxDict full = LoxDict.EMPTY;
+        for (String key : COLLIDING) full = full.put(key, key);
+
+        LoxDict dict = full;
+        for (int i = 0; i < COLLIDING.length; i++) {
+            dict = dict.remove(COLLIDING[i]);
+            assertEquals(COLLIDING.length - i - 1, dict.size());
+            assertFalse(dict.containsKey(COLLIDING[i]));
+            for (int j = i + 1; j < COLLIDING.length; j++) assertEquals(COLLIDING[j], dict.get(COLLIDING[j]));
+        }
+        assertEquals(COLLIDING.length, full.size());
+    }
+
+    @Test
+    public void removeMissingKeyReturnsTheSameDict() {
+        LoxDict dict = LoxDict.EMPTY.put("AaAa", 1.0).put("x", 2.0);
+        assertSame(dict, dict.remove("BBBB"));
+        assertSame(dict, dict.remove("y"));
+        assertSame(LoxDict.EMPTY, LoxDict.EMPTY.remove("x"));
+    }
+
+    @Test
+    public void removeEverything() {
+        LoxDict dict = LoxDict.EMPTY;
+        for (int i = 0; i < 2000; i++) dict = dict.put((double)i, (double)i);
+        for (int i = 0; i < 2000; i += 2) dict = dict.remove((double)i);
+        assertEquals(1000, dict.size());
+        for (int i = 0; i < 2000; i++) assertEquals(i % 2 == 1, dict.containsKey((double)i));
+        for (int i = 1; i < 2000; i += 2) dict = dict.remove((double)i);
+        assertEquals(0, dict.size());
+        assertEquals(0, dict.keys().size());
+    }
+
+    @Test
+    public void keysAndValuesHaveEveryEntry() {
+        LoxDict dict = LoxDict.EMPTY;
+        for (String key : COLLIDING) dict = dict.put(key, key);
+        dict = dict.put("other", "other");
+        LoxList keys = dict.keys();
+        LoxList values = dict.values();
+        assertEquals(5, keys.size());
+        assertEquals(5, values.size());
+        for (int i = 0; i < keys.size(); i++) assertEquals(dict.get(keys.get(i)), values.get(i));
+    }
+
+    @Test
+    public void shareableOnlyWithImmutableValues() {
+        assertTrue(LoxDict.EMPTY.put("a", 1.0).isShareable());
+        assertFalse(LoxDict.EMPTY.put("a", new LoxList()).isShareable());
+    }
+}
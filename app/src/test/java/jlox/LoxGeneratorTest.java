@@ -0,0 +1,146 @@
+package jlox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoxGeneratorTest {
+    private static final String COUNT =
+        "fun count(n) { var i = 0; while (i < n) { yield i; i = i + 1; } }\n";
+
+    @Test
+    public void yieldsEveryValueThenIsDone() {
+        Script script = Script.of(COUNT +
+            "var g = count(3);\n" +
+            "while (!done(g)) print next(g);\n" +
+            "print done(g);\n");
+        assertFalse(script.err(), script.hadRuntimeError());
+        assertEquals(lines("0.0", "1.0", "2.0", "true"), script.out());
+    }
+
+    @Test
+    public void emptyBodyIsDoneAtOnce() {
+        Script script = Script.of(COUNT + "print done(count(0));\n");
+        assertEquals(lines("true"), script.out());
+    }
+
+    @Test
+    public void returnEndsTheGenerator() {
+        Script script = Script.of(
+            "fun gen() { yield 1; return; yield 2; }\n" +
+            "var g = gen();\n" +
+            "print next(g);\n" +
+            "print done(g);\n");
+        assertEquals(lines("1.0", "true"), script.out());
+    }
+
+    @Test
+    public void nextAfterTheEndFails() {
+        Script script = Script.of(COUNT +
+            "var g = count(1);\n" +
+            "print next(g);\n" +
+            "print next(g);\n" +
+            "print \"unreachable\";\n");
+        assertTrue(script.hadRuntimeError());
+        assertEquals(lines("0.0"), script.out());
+        assertTrue(script.err(), script.err().contains("Generator is done."));
+    }
+
+    @Test
+    public void errorInTheBodyReachesTheConsumerAndEndsTheGenerator() {
+        Script script = Script.of(
+            "fun gen() { yield 1; yield nil + 1; yield 3; }\n" +
+            "var g = gen();\n" +
+            "print next(g);\n" +
+            "print next(g);\n");
+        assertTrue(script.hadRuntimeError());
+        assertEquals(lines("1.0"), script.out());
+        assertTrue(script.err(), script.err().contains("Operands must be"));
+
+        // The generator is done after its body failed.
+        LoxGenerator generator = LoxGenerator.of(script.interpreter.globals.values().get("g"));
+        assertFalse(generator.hasNext());
+    }
+
+    @Test
+    public void stackOverflowInTheBodyIsAnError() {
+        Script script = Script.of(
+            "fun deep(n) { return deep(n + 1); }\n" +
+            "fun gen() { yield deep(0); }\n" +
+            "print next(gen());\n");
+        assertTrue(script.hadRuntimeError());
+        assertEquals("", script.out());
+        assertTrue(script.err(), script.err().contains("Stack overflow"));
+    }
+
+    @Test(timeout = 10_000)
+    public void failedGeneratorIsDoneForEveryLaterCall() {
+        Script script = Script.of(
+            "fun deep(n) { return deep(n + 1); }\n" +
+            "fun gen() { yield deep(0); }\n" +
+            "var g = gen();\n");
+        LoxGenerator generator = LoxGenerator.of(script.interpreter.globals.values().get("g"));
+        try {
+            generator.hasNext();
+            fail("Expected the stack overflow.");
+        } catch (NativeError expected) {}
+        // The body has ended, so these must not wait for it.
+        assertFalse(generator.hasNext());
+        assertFalse(generator.hasNext());
+        try {
+            generator.next();
+            fail("Expected an error.");
+        } catch (NativeError expected) {}
+    }
+
+    @Test
+    public void generatorsAreIndependent() {
+        Script script = Script.of(COUNT +
+            "var a = count(2);\n" +
+            "var b = count(2);\n" +
+            "print next(a);\n" +
+            "print next(b);\n" +
+            "print next(a);\n" +
+            "print done(a);\n" +
+            "print done(b);\n");
+        assertEquals(lines("0.0", "0.0", "1.0", "true", "false"), script.out());
+    }
+
+    @Test(timeout = 10_000)
+    public void unfinishedBodiesUnwindWhenTheRunEnds() throws Exception {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        // Those of other tests, which don't end their runs.
+        int before = waitingBodies();
+        Path script = Files.createTempFile("generator", ".lox");
+        // A global, which the waiting body can reach, so the Cleaner would never run.
+        Files.writeString(script, "fun gen() { yield 1; yield 2; } var g = gen(); print next(g);");
+        try {
+            for (int i = 0; i < 20; i++) assertEquals(0, App.runScript(script.toAbsolutePath(), discard, discard));
+        } finally {
+            Files.delete(script);
+        }
+        while (waitingBodies() > before) Thread.sleep(10);
+    }
+
+    private static int waitingBodies() {
+        int waiting = 0;
+        for (StackTraceElement[] stack : Thread.getAllStackTraces().values()) {
+            for (StackTraceElement frame : stack) {
+                if (frame.getClassName().equals(LoxGenerator.Producer.class.getName()) && frame.getMethodName().equals("produce")) {
+                    waiting++;
+                    break;
+                }
+            }
+        }
+        return waiting;
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) text.append(line).append(System.lineSeparator());
+        return text.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package jlox;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoxListTest {
+    @Test
+    public void numbersStayUnboxedWhileTheyGrow() {
+        LoxList list = new LoxList(1);
+        for (int i = 0; i < 100; i++) list.add((double)i);
+        assertTrue(list.isNumeric());
+        assertEquals(100, list.size());
+        assertEquals(99.0, list.get(99));
+        list.set(5, -1.0);
+        assertTrue(list.isNumeric());
+        assertEquals(-1.0, list.get(5));
+    }
+
+    @Test
+    public void addingAnythingElseSwitchesToObjects() {
+        LoxList list = new LoxList(2);
+        list.add(1.0);
+        list.add(2.0);
+        list.add("three");
+        assertFalse(list.isNumeric());
+        assertEquals("[1.0, 2.0, three]", list.toString());
+
+        // For good, even once the other values are gone again.
+        list.removeLast();
+        list.add(4.0);
+        assertFalse(list.isNumeric());
+        assertEquals("[1.0, 2.0, 4.0]", list.toString());
+    }
+
+    @Test
+    public void settingAnythingElseSwitchesToObjects() {
+        LoxList list = new LoxList();
+        for (int i = 0; i < 3; i++) list.add((double)i);
+        list.set(1, null);
+        assertFalse(list.isNumeric());
+        assertEquals(0.0, list.get(0));
+        assertNull(list.get(1));
+        assertEquals(2.0, list.get(2));
+        assertEquals("[0.0, nil, 2.0]", list.toString());
+    }
+
+    @Test
+    public void removeLast() {
+        LoxList list = new LoxList();
+        list.add(1.0);
+        list.add(true);
+        assertEquals(true, list.removeLast());
+        assertEquals(1.0, list.removeLast());
+        assertEquals(0, list.size());
+        try {
+            list.removeLast();
+            fail("Expected an error for an empty list.");
+        } catch (NativeError expected) {}
+    }
+
+    @Test
+    public void outOfBounds() {
+        LoxList list = new LoxList(8);
+        list.add(1.0);
+        try {
+            list.get(1);
+            fail("Expected an error past the size, within the capacity.");
+        } catch (NativeError expected) {}
+        try {
+            list.set(1, 1.0);
+            fail("Expected an error past the size, within the capacity.");
+        } catch (NativeError expected) {}
+    }
+
+    @Test
+    public void fromLox() {
+        Script script = Script.of(String.join("\n",
+            "var list = list();",
+            "for (var i = 0; i < 20; i = i + 1) list_push(list, i);",
+            "list_set(list, 0, \"first\");",
+            "print list_size(list);",
+            "print list_get(list, 0);",
+            "print list_pop(list);"
+        ));
+        assertEquals("20.0\nfirst\n19.0\n", script.out());
+    }
+}
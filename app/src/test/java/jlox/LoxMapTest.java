@@ -0,0 +1,130 @@
+package jlox;
+
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoxMapTest {
+    @Test
+    public void numberKeys() {
+        LoxMap map = new LoxMap();
+        for (int i = 0; i < 1000; i++) map.put((double)i, "v" + i);
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) assertEquals("v" + i, map.get((double)i));
+        assertNull(map.get(1000.0));
+        map.put(0.0, "zero");
+        assertEquals(1000, map.size());
+        assertEquals("zero", map.get(0.0));
+    }
+
+    @Test
+    public void negativeZeroIsAnotherKey() {
+        // Like Interpreter.isEqual, which compares numbers with Double.equals.
+        LoxMap map = new LoxMap();
+        map.put(0.0, "zero");
+        map.put(-0.0, "negative zero");
+        assertEquals(2, map.size());
+        assertEquals("zero", map.get(0.0));
+        assertEquals("negative zero", map.get(-0.0));
+        // Also once the keys are boxed.
+        map.put("other", 1.0);
+        assertEquals("zero", map.get(0.0));
+        assertEquals("negative zero", map.get(-0.0));
+    }
+
+    @Test
+    public void nanIsAKey() {
+        LoxMap map = new LoxMap();
+        map.put(Double.NaN, "nan");
+        assertEquals("nan", map.get(Double.NaN));
+    }
+
+    @Test
+    public void stringLiteralsAreTheSameString() {
+        ErrorReporter errors = new ErrorReporter(System.err);
+        List<Token> tokens = new Lexer("\"key\" + \"key\"", errors).scanTokens();
+        assertSame(tokens.get(0).literal, tokens.get(2).literal);
+
+        LoxMap map = new LoxMap();
+        map.put(tokens.get(0).literal, 1.0);
+        assertEquals(1.0, map.get(tokens.get(2).literal));
+        // Strings made at runtime are equal, but not the same.
+        assertEquals(1.0, map.get(new String("key")));
+    }
+
+    @Test
+    public void mixedKeysAfterNumberKeys() {
+        LoxMap map = new LoxMap();
+        map.put(1.0, "one");
+        map.put("a", "letter");
+        map.put(null, "nil");
+        map.put(true, "yes");
+        assertEquals(4, map.size());
+        assertEquals("one", map.get(1.0));
+        assertEquals("letter", map.get("a"));
+        assertEquals("nil", map.get(null));
+        assertEquals("yes", map.get(true));
+        assertTrue(map.containsKey(null));
+    }
+
+    @Test
+    public void removeLeavesOtherKeysOnTheProbeReachable() {
+        // Small, so many of the keys probe past each other.
+        LoxMap map = new LoxMap(8);
+        for (int i = 0; i < 6; i++) map.put((double)(i * 16), (double)i);
+        assertEquals(2.0, map.remove(32.0));
+        assertNull(map.remove(32.0));
+        assertFalse(map.containsKey(32.0));
+        for (int i = 0; i < 6; i++) {
+            if (i != 2) assertEquals((double)i, map.get((double)(i * 16)));
+        }
+        assertEquals(5, map.size());
+    }
+
+    @Test
+    public void putReusesRemovedSlots() {
+        LoxMap map = new LoxMap(8);
+        map.put("a", 1.0);
+        map.put("b", 2.0);
+        map.remove("a");
+        map.put("b", 3.0);
+        map.put("a", 4.0);
+        assertEquals(2, map.size());
+        assertEquals(4.0, map.get("a"));
+        assertEquals(3.0, map.get("b"));
+        assertEquals(2, map.keys().size());
+    }
+
+    @Test
+    public void manyRemovesDoNotFillTheTable() {
+        // Every put and remove leaves a tombstone, which rehashing must clear, or
+        // find would probe forever once no slot is empty.
+        LoxMap map = new LoxMap(8);
+        for (int i = 0; i < 100_000; i++) {
+            map.put((double)i, (double)i);
+            assertEquals((double)i, map.remove((double)i));
+            assertFalse(map.containsKey((double)(i + 1)));
+        }
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void resizeKeepsEveryEntry() {
+        LoxMap map = new LoxMap(8);
+        for (int i = 0; i < 10_000; i++) {
+            map.put("k" + i, (double)i);
+            // Removed keys leave tombstones for the resizes to drop.
+            if (i % 3 == 0) map.remove("k" + i);
+        }
+        assertEquals(6666, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 3 == 0) {
+                assertFalse(map.containsKey("k" + i));
+            } else {
+                assertEquals((double)i, map.get("k" + i));
+            }
+        }
+        assertEquals(map.size(), map.keys().size());
+        assertEquals(map.size(), map.values().size());
+    }
+}
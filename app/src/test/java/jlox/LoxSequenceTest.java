@@ -0,0 +1,65 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoxSequenceTest {
+    private static String lines(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) text.append(line).append(System.lineSeparator());
+        return text.toString();
+    }
+
+    @Test
+    public void takeStopsThePipeline() {
+        Script script = Script.of(
+            "fun show(x) { print \"saw \" + to_str(x); return x * 10; }\n" +
+            "print seq_list(seq_take(seq_map(range(0, 100), show), 2));\n");
+        assertEquals(lines("saw 0.0", "saw 1.0", "[0.0, 10.0]"), script.out());
+    }
+
+    @Test
+    public void takeEndsAnEndlessGenerator() {
+        Script script = Script.of(
+            "fun naturals() { var i = 0; while (true) { yield i; i = i + 1; } }\n" +
+            "print seq_list(seq_take(seq(naturals()), 3));\n");
+        assertEquals(lines("[0.0, 1.0, 2.0]"), script.out());
+    }
+
+    @Test
+    public void sequencesCanBeConsumedAgain() {
+        Script script = Script.of(
+            "var s = seq_take(seq_filter(range(0, 100), fun (x) { return x > 5; }), 3);\n" +
+            "print seq_list(s);\n" +
+            "print seq_list(s);\n" +
+            "print seq_reduce(s, fun (a, b) { return a + b; }, 0);\n");
+        assertFalse(script.err(), script.hadRuntimeError());
+        assertEquals(lines("[6.0, 7.0, 8.0]", "[6.0, 7.0, 8.0]", "21.0"), script.out());
+    }
+
+    @Test
+    public void linesAreRelativeToTheCallingModule() throws IOException {
+        Path directory = Files.createTempDirectory("jlox-lines");
+        try {
+            Files.createDirectories(directory.resolve("data"));
+            Files.writeString(directory.resolve("data/input.txt"), "first\nsecond\nthird\n");
+            Files.writeString(directory.resolve("data/read.lox"), "fun read() { return seq_list(seq_take(lines(\"input.txt\"), 2)); }");
+            Path main = Files.writeString(directory.resolve("main.lox"), "import \"data/read.lox\";\nprint read();\n");
+
+            Script script = new Script();
+            Module module = new ModuleLoader(script.interpreter.program, script.interpreter.errors, false, false).load(main);
+            script.interpreter.interpret(module);
+            assertFalse(script.err(), script.hadRuntimeError());
+            assertEquals(lines("[first, second]"), script.out());
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package jlox;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoxTaskTest {
+    @Test
+    public void joinReturnsWhatTheTaskReturned() {
+        Script script = Script.of(String.join("\n",
+            "var tasks = list();",
+            "for (var i = 0; i < 10; i = i + 1) {",
+            "  var n = i;",
+            "  list_push(tasks, spawn(fun () { return n * n; }));",
+            "}",
+            "var sum = 0;",
+            "for (var i = 0; i < 10; i = i + 1) sum = sum + join(list_get(tasks, i));",
+            "print sum;"
+        ));
+        assertEquals("285.0\n", script.out());
+    }
+
+    @Test
+    public void channelsPassValuesInOrder() {
+        Script script = Script.of(String.join("\n",
+            "var values = channel(2);",
+            "var producer = spawn(fun () {",
+            "  for (var i = 0; i < 5; i = i + 1) send(values, i);",
+            "  send(values, nil);",
+            "  close(values);",
+            "});",
+            "for (var i = 0; i < 6; i = i + 1) print receive(values);",
+            "join(producer);",
+            "// Drained and closed.",
+            "print receive(values);"
+        ));
+        assertEquals("0.0\n1.0\n2.0\n3.0\n4.0\nnil\nnil\n", script.out());
+        assertFalse(script.hadRuntimeError());
+    }
+
+    @Test
+    public void sendingOnAClosedChannelFails() {
+        Script script = Script.of(String.join("\n",
+            "var values = channel(1);",
+            "close(values);",
+            "send(values, 1);"
+        ));
+        assertTrue(script.hadRuntimeError());
+        assertTrue(script.err(), script.err().contains("Can't send on a closed channel."));
+    }
+
+    @Test
+    public void joiningAFailedTaskRaisesItsErrorOnce() {
+        Script script = Script.of(String.join("\n",
+            "var task = spawn(fun () { nil(); });",
+            "join(task);",
+            "print \"not reached\";"
+        ));
+        assertTrue(script.hadRuntimeError());
+        assertEquals("", script.out());
+        String err = script.err();
+        assertTrue(err, err.contains("Can only call"));
+        assertEquals(err.indexOf("Can only call"), err.lastIndexOf("Can only call"));
+    }
+
+    @Test
+    public void failedTasksThatAreNotJoinedAreReported() {
+        Script script = Script.of(String.join("\n",
+            "var started = channel(1);",
+            "spawn(fun () {",
+            "  send(started, true);",
+            "  nil();",
+            "});",
+            "receive(started);",
+            "sleep(0.2);",
+            "print \"done\";"
+        ));
+        assertEquals("done\n", script.out());
+        assertTrue(script.hadRuntimeError());
+        assertTrue(script.err(), script.err().contains("Can only call functions and classes."));
+    }
+}
@@ -0,0 +1,82 @@
+package jlox;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoxVectorTest {
+    // A full tail, and a tail plus a full trie of one level.
+    private static final int[] BOUNDARIES = { 32, 1056 };
+
+    private static LoxVector vectorOf(int size) {
+        LoxVector vector = LoxVector.EMPTY;
+        for (int i = 0; i < size; i++) vector = vector.push((double)i);
+        return vector;
+    }
+
+    @Test
+    public void pushAcrossTheBoundaries() {
+        for (int boundary : BOUNDARIES) {
+            for (int size = boundary - 1; size <= boundary + 1; size++) {
+                LoxVector vector = vectorOf(size);
+                assertEquals(size, vector.size());
+                for (int i = 0; i < size; i++) assertEquals((double)i, vector.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void popAcrossTheBoundaries() {
+        LoxVector vector = vectorOf(1100);
+        for (int size = 1099; size >= 0; size--) {
+            vector = vector.pop();
+            assertEquals(size, vector.size());
+            if (size > 0) assertEquals((double)(size - 1), vector.get(size - 1));
+        }
+        for (int boundary : BOUNDARIES) {
+            LoxVector popped = vectorOf(boundary + 1).pop();
+            for (int i = 0; i < boundary; i++) assertEquals((double)i, popped.get(i));
+            // Pushing again after popping the first element of a new tail.
+            LoxVector pushed = popped.push(-1.0);
+            assertEquals(-1.0, pushed.get(boundary));
+            assertEquals((double)(boundary - 1), pushed.get(boundary - 1));
+        }
+    }
+
+    @Test
+    public void setInTheTrieAndInTheTail() {
+        for (int boundary : BOUNDARIES) {
+            LoxVector vector = vectorOf(boundary + 1);
+            for (int index : new int[] { 0, 31, 32, boundary - 1, boundary }) {
+                LoxVector changed = vector.set(index, "x");
+                assertEquals("x", changed.get(index));
+                assertEquals((double)index, vector.get(index));
+                for (int i = 0; i <= boundary; i++) {
+                    if (i != index) assertEquals((double)i, changed.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void outOfBounds() {
+        LoxVector vector = vectorOf(33);
+        for (int index : new int[] { 33, 1056 }) {
+            try {
+                vector.get(index);
+                fail("Expected an error for index " + index + ".");
+            } catch (NativeError expected) {}
+            try {
+                vector.set(index, 1.0);
+                fail("Expected an error for index " + index + ".");
+            } catch (NativeError expected) {}
+        }
+    }
+
+    @Test
+    public void popEmpty() {
+        try {
+            LoxVector.EMPTY.pop();
+            fail("Expected an error for an empty vector.");
+        } catch (NativeError expected) {}
+    }
+}
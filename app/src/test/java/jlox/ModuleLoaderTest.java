@@ -0,0 +1,89 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ModuleLoaderTest {
+    private Path directory;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private Interpreter interpreter;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("jlox-modules");
+        interpreter = new Interpreter(new Program(), new PrintStream(out, true), new PrintStream(err, true));
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(path);
+        }
+    }
+
+    private Path write(String name, String source) throws IOException {
+        Path path = directory.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, source);
+        return path;
+    }
+
+    private void run(Path main) throws IOException {
+        Module module = new ModuleLoader(interpreter.program, interpreter.errors, false, false).load(main);
+        assertFalse("Compile errors: " + err, interpreter.errors.hadError);
+        interpreter.interpret(module);
+        assertFalse("Runtime errors: " + err, interpreter.errors.hadRuntimeError);
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) text.append(line).append(System.lineSeparator());
+        return text.toString();
+    }
+
+    @Test
+    public void importsRunOnceWhereTheyAreReached() throws IOException {
+        write("shared.lox", "print \"shared\"; var value = 1;");
+        write("a.lox", "import \"shared.lox\"; print \"a\";");
+        write("b.lox", "import \"shared.lox\"; print \"b\";");
+        run(write("main.lox", "print \"main\"; import \"a.lox\"; import \"b.lox\"; import \"a.lox\"; print value;"));
+        assertEquals(lines("main", "shared", "a", "b", "1.0"), out.toString());
+    }
+
+    @Test
+    public void cyclicImports() throws IOException {
+        write("a.lox", "import \"b.lox\"; print \"a\"; fun fromA() { return \"from a\"; }");
+        write("b.lox", "import \"a.lox\"; print \"b\"; fun fromB() { return fromA(); }");
+        run(write("main.lox", "import \"a.lox\"; print fromB();"));
+        assertEquals(lines("b", "a", "from a"), out.toString());
+    }
+
+    @Test
+    public void importsAreRelativeToTheImportingModule() throws IOException {
+        write("lib/util.lox", "import \"helper.lox\"; print \"util\";");
+        write("lib/helper.lox", "print \"helper\";");
+        run(write("main.lox", "import \"lib/util.lox\";"));
+        assertEquals(lines("helper", "util"), out.toString());
+    }
+
+    @Test
+    public void errorsNameTheirModule() throws IOException {
+        Path broken = write("broken.lox", "var x = ;");
+        Path main = write("main.lox", "import \"broken.lox\";\nimport \"missing.lox\";");
+        new ModuleLoader(interpreter.program, interpreter.errors, false, false).load(main);
+        assertTrue(interpreter.errors.hadError);
+        String errors = err.toString();
+        assertTrue(errors, errors.contains(broken + ": [line 1] Error"));
+        assertTrue(errors, errors.contains(main + ": [line 2] Error"));
+    }
+}
@@ -0,0 +1,74 @@
+package jlox;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ParallelTest {
+    // Enough elements for every core to get a few chunks.
+    private static final String NUMBERS = String.join("\n",
+        "var numbers = list();",
+        "for (var i = 1; i <= 1000; i = i + 1) list_push(numbers, i);"
+    );
+
+    @Test
+    public void mapKeepsTheOrder() {
+        Script script = Script.of(String.join("\n",
+            NUMBERS,
+            "var squares = parallel_map(numbers, fun (n) { return n * n; });",
+            "var ordered = true;",
+            "for (var i = 0; i < 1000; i = i + 1) {",
+            "  if (list_get(squares, i) != (i + 1) * (i + 1)) ordered = false;",
+            "}",
+            "print list_size(squares);",
+            "print ordered;"
+        ));
+        assertEquals("1000.0\ntrue\n", script.out());
+    }
+
+    @Test
+    public void mapOverAnArray() {
+        Script script = Script.of(String.join("\n",
+            "var values = array(100);",
+            "for (var i = 0; i < 100; i = i + 1) array_set(values, i, i);",
+            "var doubled = parallel_map(values, fun (n) { return n * 2; });",
+            "print array_sum(doubled);",
+            "print array_get(doubled, 99);"
+        ));
+        assertEquals("9900.0\n198.0\n", script.out());
+    }
+
+    @Test
+    public void reduceCombinesChunksInOrder() {
+        Script script = Script.of(String.join("\n",
+            NUMBERS,
+            "print parallel_reduce(numbers, fun (a, b) { return a + b; }, 0);",
+            "// Associative but not commutative, so chunks must be combined in order.",
+            "var strings = list();",
+            "var expected = \"\";",
+            "for (var i = 0; i < 1000; i = i + 1) {",
+            "  list_push(strings, to_str(i));",
+            "  expected = expected + to_str(i);",
+            "}",
+            "print parallel_reduce(strings, fun (a, b) { return a + b; }, \"\") == expected;"
+        ));
+        assertEquals("500500.0\ntrue\n", script.out());
+    }
+
+    @Test
+    public void reduceOfNothingIsTheInitialValue() {
+        Script script = Script.of("print parallel_reduce(list(), fun (a, b) { return a + b; }, 42);");
+        assertEquals("42.0\n", script.out());
+    }
+
+    @Test
+    public void errorsInTheFunctionAreRaised() {
+        Script script = Script.of(String.join("\n",
+            NUMBERS,
+            "parallel_map(numbers, fun (n) { if (n == 500) nil(); return n; });",
+            "print \"not reached\";"
+        ));
+        assertEquals("", script.out());
+        assertTrue(script.hadRuntimeError());
+        assertTrue(script.err(), script.err().contains("Can only call functions and classes."));
+    }
+}
@@ -0,0 +1,60 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import static org.junit.Assert.*;
+
+// Runs Lox source in a fresh interpreter, for tests, and keeps what it printed.
+class Script {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    final Interpreter interpreter = new Interpreter(new Program(), new PrintStream(out, true), new PrintStream(err, true));
+    private final boolean lazyParsing;
+
+    Script() {
+        this(false);
+    }
+
+    Script(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+    }
+
+    // Loads source without running it, so its compile errors are in err.
+    Module load(String source) {
+        return new ModuleLoader(interpreter.program, interpreter.errors, lazyParsing, false).load(source);
+    }
+
+    // Runs source, which must compile, in this script's interpreter.
+    Script run(String source) {
+        return run(load(source));
+    }
+
+    // The same for a file, which paths in it are relative to.
+    Script run(Path path) throws IOException {
+        return run(new ModuleLoader(interpreter.program, interpreter.errors, lazyParsing, false).load(path));
+    }
+
+    private Script run(Module module) {
+        assertFalse("Compile errors: " + err, interpreter.errors.hadError);
+        interpreter.interpret(module);
+        return this;
+    }
+
+    static Script of(String source) {
+        return new Script().run(source);
+    }
+
+    String out() {
+        return out.toString();
+    }
+
+    String err() {
+        return err.toString();
+    }
+
+    boolean hadRuntimeError() {
+        return interpreter.errors.hadRuntimeError;
+    }
+}
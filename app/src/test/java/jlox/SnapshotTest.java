@@ -0,0 +1,165 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+    private static final String PRELUDE =
+        "class Point {\n" +
+        "  init(x, y) { this.x = x; this.y = y; }\n" +
+        "  sum() { return this.x + this.y; }\n" +
+        "}\n" +
+        "class Doubled < Point {\n" +
+        "  sum() { return super.sum() * 2; }\n" +
+        "}\n" +
+        "fun counter() { var n = 0; fun next() { n = n + 1; return n; } return next; }\n" +
+        "var c = counter();\n" +
+        "c();\n" +
+        "var p = Doubled(1, 2);\n" +
+        "var l = list(); list_push(l, \"a\"); list_push(l, p);\n" +
+        "var m = map(); map_put(m, 1, \"one\"); map_put(m, \"two\", 2);\n" +
+        "var a = array(3); array_set(a, 2, 7);\n" +
+        "var v = vector_push(vector_push(vector(), 1), 2);\n" +
+        "var d = dict_put(dict(), \"k\", v);\n" +
+        "var native = clock;\n";
+
+    private static final String USE =
+        "print c();\n" +
+        "print p.sum();\n" +
+        "print list_get(l, 1) == p;\n" +
+        "print map_get(m, 1) + to_str(map_get(m, \"two\"));\n" +
+        "print array_get(a, 2);\n" +
+        "print vector_get(dict_get(d, \"k\"), 1);\n" +
+        "print native == clock;\n" +
+        "print Point(4, 5).sum();\n";
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("jlox", ".snapshot");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void restoredGlobalsBehaveLikeTheOriginals() throws IOException {
+        Script original = Script.of(PRELUDE);
+        Snapshot.save(original.interpreter, file);
+        original.run(USE);
+        assertFalse(original.err(), original.hadRuntimeError());
+
+        Script restored = new Script();
+        Snapshot.restore(restored.interpreter, file);
+        restored.run(USE);
+        assertFalse(restored.err(), restored.hadRuntimeError());
+        assertEquals(original.out(), restored.out());
+    }
+
+    @Test
+    public void restoredGlobalsAreCopies() throws IOException {
+        Script original = Script.of(PRELUDE);
+        Snapshot.save(original.interpreter, file);
+
+        Script first = new Script();
+        Snapshot.restore(first.interpreter, file);
+        first.run("c(); c();");
+        Script second = new Script();
+        Snapshot.restore(second.interpreter, file);
+        second.run("print c();");
+        assertEquals("2.0" + System.lineSeparator(), second.out());
+    }
+
+    @Test
+    public void unsaveableGlobalIsNamedAndTheOldSnapshotKept() throws IOException {
+        Files.writeString(file, "old");
+        Script script = Script.of("var fine = 1; var holder = list(); list_push(holder, channel(1));");
+        try {
+            Snapshot.save(script.interpreter, file);
+            fail("Expected an error.");
+        } catch (IOException expected) {
+            assertEquals("Can't save global 'holder' in a snapshot, it holds a channel.", expected.getMessage());
+        }
+        assertEquals("old", Files.readString(file));
+        try (Stream<Path> siblings = Files.list(file.getParent())) {
+            assertFalse(siblings.anyMatch(path -> path.getFileName().toString().startsWith(file.getFileName().toString()) && path.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void missingSnapshot() throws IOException {
+        Files.delete(file);
+        try {
+            Snapshot.restore(new Script().interpreter, file);
+            fail("Expected an error.");
+        } catch (IOException expected) {
+            assertEquals("No snapshot at " + file + ".", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void truncatedSnapshot() throws IOException {
+        Snapshot.save(Script.of(PRELUDE).interpreter, file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        Script script = new Script();
+        try {
+            Snapshot.restore(script.interpreter, file);
+            fail("Expected an error.");
+        } catch (IOException expected) {}
+        // Nothing was restored.
+        assertFalse(script.interpreter.globals.values().containsKey("c"));
+    }
+
+    @Test
+    public void classesOutsideTheAllowListAreNotRead() throws IOException {
+        Snapshot.save(Script.of(PRELUDE).interpreter, file);
+        // The header of the real snapshot, followed by a global of a class jlox never writes.
+        int magic;
+        int version;
+        long format;
+        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(file))) {
+            magic = in.readInt();
+            version = in.readInt();
+            format = in.readLong();
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeLong(format);
+            out.writeObject(new HashMap<>(Map.of("random", new Random())));
+            out.writeObject(new HashMap<>());
+        }
+
+        Script script = new Script();
+        try {
+            Snapshot.restore(script.interpreter, file);
+            fail("Expected an error.");
+        } catch (IOException expected) {}
+        assertFalse(script.interpreter.globals.values().containsKey("random"));
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        try {
+            Snapshot.restore(new Script().interpreter, file);
+            fail("Expected an error.");
+        } catch (IOException expected) {}
+    }
+}